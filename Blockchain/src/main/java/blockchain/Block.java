@@ -7,52 +7,80 @@ import java.util.Date;
 import java.util.List;
 
 public class Block {
+    private final int version = Constants.BLOCK_VERSION;
     private final int index;
     private final String previousHash;
-    private final long timestamp;
+    private final String merkleRoot;
+    private long timestamp;
+    private final int bits; // Compact proof-of-work target
     private final List<Transaction> transactions;
     private String hash;
     private int nonce;
+    private transient MerkleTree merkleTree; // Built once per block, not serialized
 
     public Block(int index, String previousHash) {
         this.index = index;
         this.previousHash = previousHash;
         this.timestamp = 0;
+        this.bits = Constants.INITIAL_DIFFICULTY_BITS;
         this.transactions = new ArrayList<>();
+        this.merkleRoot = calculateMerkleRoot();
         this.nonce = 0;
         this.hash = calculateHash();
     }
 
-    public Block(int index, String previousHash, List<Transaction> transactions) {
+    public Block(int index, String previousHash, List<Transaction> transactions, int bits) {
         this.index = index;
         this.previousHash = previousHash;
         this.timestamp = new Date().getTime();
+        this.bits = bits;
         this.transactions = transactions != null ? new ArrayList<>(transactions) : new ArrayList<>();
+        this.merkleRoot = calculateMerkleRoot();
         this.nonce = 0;
         this.hash = calculateHash();
     }
 
-    // Calculate the hash for the block using SHA-256 (without Merkle Root for simplicity)
+    // Calculate the block hash from the fixed-size header; the Merkle root comes from the transactions so tampering is detected
     public String calculateHash() {
-        String transactionsData = transactions.stream()
-                .map(Transaction::toString) // Assuming Transaction class has a meaningful toString override
-                .reduce("", String::concat);
-        return StringUtil.applySha256(previousHash + timestamp + index + transactionsData + nonce);
-    }
-
-    // Mining the block: increment the nonce until the hash satisfies the difficulty
-    public synchronized void mineBlock(int difficulty) {
-        String target = new String(new char[difficulty]).replace('\0', '0');  // Create a target string with the correct number of leading zeros
-        while (!hash.substring(0, difficulty).equals(target)) {
-            nonce++;
-            hash = calculateHash();
+        BlockHeader header = new BlockHeader(version, previousHash, calculateMerkleRoot(), timestamp, bits, nonce);
+        return header.hash().toHex();
+    }
+
+    public String calculateMerkleRoot() {
+        return getMerkleTree().getRoot();
+    }
+
+    public MerkleTree getMerkleTree() {
+        if (merkleTree == null) {
+            merkleTree = new MerkleTree(transactions.stream().map(Transaction::getTransactionId).toList());
         }
-        System.out.println("Block mined! Hash: " + hash);
+        return merkleTree;
+    }
+
+    // Compact inclusion proof for light clients, null if the transaction is not in this block
+    public MerkleProof getMerkleProof(String transactionId) {
+        return getMerkleTree().getProof(transactionId, hash);
+    }
+
+    // Header used by the mining workers: only the nonce (and occasionally the timestamp) changes between attempts
+    public BlockHeader createHeader(long timestamp) {
+        return new BlockHeader(version, previousHash, merkleRoot, timestamp, bits, 0);
+    }
+
+    // Store the winning timestamp/nonce found by the MiningEngine
+    public synchronized void applySolution(long timestamp, int nonce, String hash) {
+        this.timestamp = timestamp;
+        this.nonce = nonce;
+        this.hash = hash;
     }
 
     public int getIndex() {return index;}
     public String getPreviousHash() {return previousHash;}
     public String getHash() {return hash;}
+    public String getMerkleRoot() {return merkleRoot;}
+    public long getTimestamp() {return timestamp;}
+    public int getBits() {return bits;}
+    public int getNonce() {return nonce;}
     public List<Transaction> getTransactions() {return transactions;}
 
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package blockchain;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+public class BlockHeader {
+    public static final int SIZE = 84; // version(4) + previousHash(32) + merkleRoot(32) + timestamp(8) + bits(4) + nonce(4)
+    private static final int TIMESTAMP_OFFSET = 68;
+    private static final int BITS_OFFSET = 76;
+    private static final int NONCE_OFFSET = 80;
+    private static final int MIDSTATE_LENGTH = 64; // The first SHA-256 block (version, previousHash, most of merkleRoot) never changes while mining
+
+    private final byte[] bytes;
+    private final MessageDigest midstate; // SHA-256 state after absorbing the constant prefix
+
+    public BlockHeader(int version, String previousHash, String merkleRoot, long timestamp, int bits, int nonce) {
+        this(ByteBuffer.allocate(SIZE)
+                .putInt(version)
+                .put(toHashBytes(previousHash))
+                .put(toHashBytes(merkleRoot))
+                .putLong(timestamp)
+                .putInt(bits)
+                .putInt(nonce)
+                .array());
+    }
+
+    // Rebuild a header from its serialized form, e.g. one handed out to an external miner
+    public BlockHeader(byte[] bytes) {
+        if (bytes.length != SIZE) {
+            throw new IllegalArgumentException("Block header must be " + SIZE + " bytes, got " + bytes.length);
+        }
+        this.bytes = bytes.clone();
+        this.midstate = StringUtil.newSha256Digest();
+        this.midstate.update(this.bytes, 0, MIDSTATE_LENGTH);
+    }
+
+    // Patch the nonce in place and hash only the remaining tail on top of the precomputed midstate into a reusable buffer
+    public void hashWithNonce(int nonce, byte[] out) {
+        bytes[NONCE_OFFSET] = (byte) (nonce >>> 24);
+        bytes[NONCE_OFFSET + 1] = (byte) (nonce >>> 16);
+        bytes[NONCE_OFFSET + 2] = (byte) (nonce >>> 8);
+        bytes[NONCE_OFFSET + 3] = (byte) nonce;
+        try {
+            MessageDigest digest = (MessageDigest) midstate.clone();
+            digest.update(bytes, MIDSTATE_LENGTH, SIZE - MIDSTATE_LENGTH);
+            digest.digest(out, 0, Sha256Hash.LENGTH);
+        } catch (CloneNotSupportedException | DigestException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Sha256Hash hash() {
+        byte[] out = new byte[Sha256Hash.LENGTH];
+        hashWithNonce(ByteBuffer.wrap(bytes).getInt(NONCE_OFFSET), out);
+        return Sha256Hash.wrap(out);
+    }
+
+    public byte[] getBytes() {return bytes.clone();}
+    public long getTimestamp() {return ByteBuffer.wrap(bytes).getLong(TIMESTAMP_OFFSET);}
+    public int getBits() {return ByteBuffer.wrap(bytes).getInt(BITS_OFFSET);}
+
+    // Decode a hex hash into exactly 32 bytes, left-padding short values such as the genesis previousHash "0"
+    private static byte[] toHashBytes(String hex) {
+        byte[] result = new byte[Sha256Hash.LENGTH];
+        byte[] decoded = StringUtil.hexToBytes(hex.length() % 2 == 0 ? hex : "0" + hex);
+        int length = Math.min(decoded.length, Sha256Hash.LENGTH);
+        System.arraycopy(decoded, decoded.length - length, result, Sha256Hash.LENGTH - length, length);
+        return result;
+    }
+}
@@ -0,0 +1,20 @@
+package blockchain;
+
+import ledger.TransactionOutput;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// What connecting a block took out of the UTXO set, kept alongside the block so it can be disconnected exactly.
+// The outputs a block created are its own transactions' outputs, so only the spent ones need recording.
+public class BlockUndo {
+    private final List<TransactionOutput> spentOutputs = new ArrayList<>(); // In spending order, each with its creation height
+
+    void addSpent(TransactionOutput output) {
+        spentOutputs.add(output);
+    }
+
+    public List<TransactionOutput> getSpentOutputs() {
+        return Collections.unmodifiableList(spentOutputs);
+    }
+}
@@ -4,6 +4,10 @@ import java.util.*;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import ledger.LRUCache;
+import ledger.Mempool;
+import ledger.MempoolStore;
+import ledger.OrphanPool;
+import ledger.SignatureCache;
 import networking.Message;
 import networking.MessageType;
 import networking.NetworkManager;
@@ -11,36 +15,112 @@ import ledger.CoinbaseTransaction;
 import ledger.Transaction;
 import ledger.TransactionInput;
 import ledger.TransactionOutput;
+import ledger.UTXOSet;
 import java.util.concurrent.*;
 
 public class Blockchain {
-    public static final ConcurrentHashMap<String, TransactionOutput> UTXOs = new ConcurrentHashMap<>(); // Instance-level UTXO pool
+    public static final UTXOSet UTXOs = new UTXOSet(); // Instance-level UTXO pool, indexed by recipient
     public static final int MINIMUM_CONFIRMATIONS = Constants.MINIMUM_CONFIRMATIONS;
     public static final int MAX_HASH_COUNT = Constants.MAX_HASH_COUNT;
-    public static ConcurrentLinkedQueue<Transaction> unconfirmedTransactions = new ConcurrentLinkedQueue<>(); // Unconfirmed transaction pool using ConcurrentLinkedQueue
+    public static final SignatureCache signatureCache = new SignatureCache(Constants.SIGNATURE_CACHE_SIZE); // Shared by admission and block validation
+    public static final OrphanPool orphanTransactions = new OrphanPool(Constants.MAX_ORPHAN_TRANSACTIONS, Constants.ORPHAN_TTL_MS);
+    public static final Mempool unconfirmedTransactions = new Mempool(Constants.MEMPOOL_MAX_BYTES); // Unconfirmed transaction pool, indexed by spent output
     private final List<Block> chain;
+    private final List<BlockUndo> undoRecords = new ArrayList<>(); // Parallel to chain: what each block spent
     private NetworkManager networkManager;
     private final Deque<String> receivedBlockHashes = new ConcurrentLinkedDeque<>(); // Track recent block hashes
-    private final LRUCache<String, Boolean> receivedTransactions = new LRUCache<>(500); // Capacity of 500
-    private final ExecutorService miningExecutor = Executors.newSingleThreadExecutor(); // A single thread for mining
-    private final int difficulty = Constants.MINING_DIFFICULTY; // Mining difficulty
-    private int peerChainTipIndex = -1;  // New field to store the peer's chain tip index
+    private final Map<String, Boolean> receivedTransactions = Collections.synchronizedMap(new LRUCache<>(500)); // Capacity of 500, shared with the admission workers
+    private final ExecutorService miningExecutor = Executors.newSingleThreadExecutor(); // A single thread coordinating mining
+    private final MiningMetrics miningMetrics = new MiningMetrics(); // Hashrate, time-to-block and stale block counters
+    private final MiningEngine miningEngine = new MiningEngine(Constants.MINING_THREADS, miningMetrics); // Parallel nonce search
+    private MiningScheduler miningScheduler;
+    private volatile int peerChainTipIndex = -1;  // Tip index reported by the peer we are syncing from, -1 when not syncing
+    private volatile boolean caughtUp = false; // Set once the initial sync finished or turned out to be unnecessary
+    private volatile String tipHash; // Hash of the last block, polled by the mining workers to detect stale work
+    private final SignatureVerifier signatureVerifier = new SignatureVerifier(Constants.SIGNATURE_THREADS); // Parallel block signature checks
+    private final TransactionAdmission transactionAdmission; // Calls back into acceptTransaction, so created last in the constructor
+    private final ChainIndex chainIndex = new ChainIndex(); // Transaction and block hash lookups into the main chain
+    private MempoolStore mempoolStore; // Pending transactions saved by the previous run, restored once we have caught up
+    private ChainStore chainStore; // Blocks and UTXO snapshots on disk, null when running without persistence
 
     public Blockchain() {
         this.chain = new ArrayList<>();
         Block genesisBlock = new Block(0, "0");
         chain.add(genesisBlock);
+        undoRecords.add(new BlockUndo());
+        chainIndex.connect(genesisBlock);
+        tipHash = genesisBlock.getHash();
+        UTXOs.setTipHeight(genesisBlock.getIndex());
         addBlockHashToTracking(genesisBlock.getHash());  // Track the genesis block hash
+        transactionAdmission = new TransactionAdmission(this, Constants.ADMISSION_THREADS);
     }
 
-    public void startMining(int numTransactionsToMine, ForkResolution forkResolution) { // Start mining asynchronously
-        miningExecutor.submit(() -> minePendingTransactions(numTransactionsToMine, forkResolution));
+    // Continue from the chain saved by the previous run: blocks, undo records, indexes and UTXO set. Call before networking starts.
+    public synchronized void openChainStore(ChainStore store) {
+        ChainStore.Loaded loaded = store.open(chain.get(0));
+        synchronized (unconfirmedTransactions) {
+            for (int i = 0; i < loaded.blocks.size(); i++) {
+                Block block = loaded.blocks.get(i);
+                chain.add(block);
+                undoRecords.add(loaded.undoRecords.get(i));
+                chainIndex.connect(block);
+                addBlockHashToTracking(block.getHash());
+            }
+            loaded.utxos.values().forEach(output -> UTXOs.put(output.id, output));
+            UTXOs.setTipHeight(chain.size() - 1);
+        }
+        tipHash = getLastBlock().getHash();
+        chainStore = store;
+    }
+
+    // Hand a solved block, from the local miner or an external worker, to consensus and announce it to peers
+    public void submitMinedBlock(Block block, ForkResolution forkResolution) {
+        forkResolution.addBlock(block);  // Add block to ForkResolution for consensus
+        addBlockHashToTracking(block.getHash());
+        networkManager.broadcastMessage(new Message(MessageType.NEW_BLOCK, new Gson().toJson(block)));
     }
 
-    // Add a transaction to the global unconfirmed pool in Main
-    public synchronized boolean addTransaction(Transaction transaction) {
-        if (transaction.processTransaction()) {
-            unconfirmedTransactions.add(transaction);
+    // Called once we have the peers' chain, or know there is none to fetch: mining may start and the saved pool is restored
+    public void markCaughtUp() {
+        caughtUp = true;
+        restoreMempool();
+    }
+
+    // Re-admits the transactions saved by the previous run against the current UTXO set, so only once the chain has synced.
+    // Goes through the batch admission, so signatures, the expensive part, are checked in parallel.
+    private void restoreMempool() {
+        if (mempoolStore == null) {
+            return;
+        }
+        new Thread(() -> {
+            List<Transaction> saved = mempoolStore.takeSavedTransactions();
+            if (saved.isEmpty()) {
+                return;
+            }
+            int restored = transactionAdmission.submitBatch(saved, null).join();
+            System.out.println("Restored " + restored + " of " + saved.size() + " saved pending transactions.");
+        }, "mempool-restore").start();
+    }
+
+    public synchronized void startMining(ForkResolution forkResolution) { // Start the continuous mining loop asynchronously
+        if (miningScheduler == null) {
+            miningScheduler = new MiningScheduler(this, forkResolution, miningEngine);
+            miningExecutor.submit(miningScheduler);
+        }
+    }
+
+    // The serialized, stateful admission step: UTXO lookups, the conflict check and the insert happen under the mempool
+    // lock, which block connection also holds while it spends outputs, instead of under the whole chain's monitor
+    public boolean addTransaction(Transaction transaction) {
+        boolean processed;
+        synchronized (unconfirmedTransactions) {
+            processed = transaction.processTransaction();
+            if (processed && !unconfirmedTransactions.add(transaction)) {
+                System.out.println("Transaction was not accepted into the pool.");
+                return false;
+            }
+        }
+        if (processed) {
             receivedTransactions.put(transaction.transactionId, Boolean.TRUE); // Add to received transactions cache
             if (transaction.value == 0) {
                 System.out.println("Zero-value transaction added to the pool.");
@@ -54,42 +134,60 @@ public class Blockchain {
         }
     }
 
-    // Mine n number of pending transactions from the pool in Main
-    private synchronized void minePendingTransactions(int numTransactionsToMine, ForkResolution forkResolution) {
-        if (unconfirmedTransactions.size() >= numTransactionsToMine) {
-            System.out.println("Mining a new block with " + numTransactionsToMine + " pending transactions...");
-
-            List<Transaction> transactionsToMine = new ArrayList<>();
-            // Mining reward
-            float miningReward = Constants.MINING_REWARD;
-            Transaction coinbaseTransaction = new CoinbaseTransaction(Main.minerAddress, miningReward);
-            coinbaseTransaction.processTransaction();  // Process the coinbase transaction
-            transactionsToMine.add(coinbaseTransaction);
-            for (int i = 0; i < numTransactionsToMine; i++) {
-                Transaction tx = unconfirmedTransactions.poll();
-                if (tx != null) {
-                    transactionsToMine.add(tx);
-                }
-            }
-
-            Block newBlock = new Block(chain.size(), chain.get(chain.size() - 1).getHash(), transactionsToMine);
-            newBlock.mineBlock(difficulty);
-            forkResolution.addBlock(newBlock);  // Add block to ForkResolution for consensus
-            addBlockHashToTracking(newBlock.getHash());
-            networkManager.broadcastMessage(new Message(MessageType.NEW_BLOCK, new Gson().toJson(newBlock)));
-            //System.out.println("BROADCASTED");
-        } else {
-            System.out.println(unconfirmedTransactions.size() + " transactions in the pool. Not enough transactions to mine yet.");
+    // Build a block on the current tip from the best paying pool transactions that fit in MAX_BLOCK_SIZE. Transactions stay
+    // in the pool until the block connects, so an abandoned template needs no bookkeeping beyond its coinbase.
+    public synchronized Block createBlockTemplate() {
+        List<Transaction> selected = unconfirmedTransactions.selectForBlock(
+                Constants.MAX_BLOCK_SIZE - Constants.BLOCK_HEADER_OVERHEAD - Constants.COINBASE_SIZE_RESERVE);
+        float fees = 0;
+        int blockSize = Constants.BLOCK_HEADER_OVERHEAD;
+        for (Transaction tx : selected) {
+            fees += tx.fee;
+            blockSize += tx.getSize();
         }
+        // Mining reward plus the fees of every included transaction
+        float miningReward = Constants.MINING_REWARD + fees;
+        Transaction coinbaseTransaction = new CoinbaseTransaction(Main.minerAddress, miningReward);
+        coinbaseTransaction.processTransaction();  // Process the coinbase transaction
+        List<Transaction> transactionsToMine = new ArrayList<>();
+        transactionsToMine.add(coinbaseTransaction);
+        transactionsToMine.addAll(selected);
+        blockSize += coinbaseTransaction.getSize();
+        System.out.println("Mining a new block with " + selected.size() + " pending transactions (" + blockSize + " bytes, " + fees + " in fees)...");
+        return new Block(chain.size(), tipHash, transactionsToMine, getNextBits(chain.size()));
+    }
+
+    // Undo a template that was abandoned: its coinbase UTXO was registered up front and must not linger
+    public synchronized void releaseTemplate(Block template) {
+        Transaction coinbaseTransaction = template.getTransactions().get(0);
+        coinbaseTransaction.outputs.forEach(output -> Blockchain.UTXOs.remove(output.id));
     }
 
     public synchronized boolean addAndValidateBlock(Block block) {
         Block lastBlock = chain.get(chain.size() - 1);
-        if (!block.getHash().startsWith(StringUtil.getDifficultyString(difficulty))) {
-            System.out.println("Block failed PoW validation: incorrect difficulty.");
+        if (!Sha256Hash.isHex(block.getHash())) {
+            System.out.println("Block failed validation: malformed block hash.");
+            return false;
+        }
+        if (!Sha256Hash.fromHex(block.getHash()).meetsTarget(block.getBits())) {
+            System.out.println("Block failed PoW validation: hash is above the target.");
             return false;
         }
         if (block.getPreviousHash().equals(lastBlock.getHash()) && block.getIndex() == lastBlock.getIndex() + 1) {
+            // Retargeting measures the window by these timestamps, so a miner must not be able to post-date them freely
+            long medianTimePast = getMedianTimePast(block.getIndex());
+            if (block.getTimestamp() <= medianTimePast) {
+                System.out.println("Block failed validation: timestamp " + block.getTimestamp() + " is not after the median time past " + medianTimePast);
+                return false;
+            }
+            if (block.getTimestamp() > System.currentTimeMillis() + Constants.MAX_FUTURE_BLOCK_TIME_MS) {
+                System.out.println("Block failed validation: timestamp " + block.getTimestamp() + " is too far in the future.");
+                return false;
+            }
+            if (block.getBits() != getNextBits(block.getIndex())) {
+                System.out.println("Block failed PoW validation: unexpected difficulty target " + Integer.toHexString(block.getBits()));
+                return false;
+            }
             return validateAndAddBlock(block);
         }
         else if (block.getIndex() <= lastBlock.getIndex()) {
@@ -103,26 +201,54 @@ public class Blockchain {
     }
 
     private synchronized boolean validateAndAddBlock(Block block) {
+        for (Transaction transaction : block.getTransactions()) {
+            if (transaction == null || !Sha256Hash.isHex(transaction.transactionId)) {
+                System.out.println("Block validation failed: malformed transaction id, the Merkle root can't be computed.");
+                return false;
+            }
+        }
         String recalculatedHash = block.calculateHash();
         System.out.println("Recalculated block hash: " + recalculatedHash);
         if (!block.getHash().equals(recalculatedHash)) {
             System.out.println("Block validation failed: recalculated hash does not match.");
             return false;
         }
+        if (!block.calculateMerkleRoot().equals(block.getMerkleRoot())) {
+            System.out.println("Block validation failed: Merkle root does not match the transactions.");
+            return false;
+        }
 
+        // All signatures first, in parallel; blocks pre-checked during sync only hit the per-transaction memo here
+        if (!signatureVerifier.verifyAll(block.getTransactions())) {
+            System.out.println("Block contains an invalid transaction signature.");
+            return false;
+        }
+        Set<String> spentInBlock = new HashSet<>(); // Outpoints spent by this block so far, so none is counted twice
         for (Transaction transaction : block.getTransactions()) {
-            if (!transaction.verifySignature()) {
-                System.out.println("Block contains an invalid transaction signature.");
+            if (!"COINBASE".equals(transaction.sender) && !transaction.hasValidFormat()) {
+                System.out.println("Block validation failed: malformed transaction " + transaction.transactionId);
                 return false;
             }
             if (transaction.value != 0) {
-                // Check if inputs refer to valid and unspent UTXOs
+                // Inputs must be unspent, mature outputs of the sender, the same rules the pool admits them by
                 for (TransactionInput input : transaction.getInputs()) {
                     TransactionOutput utxo = Blockchain.UTXOs.get(input.transactionOutputId);
                     if (utxo == null) {
                         System.out.println("Transaction input refers to a non-existent UTXO.");
                         return false;
                     }
+                    if (!utxo.isMine(transaction.sender)) {
+                        System.out.println("Transaction input refers to a UTXO the sender does not own: " + input.transactionOutputId);
+                        return false;
+                    }
+                    if (utxo.getConfirmations() < MINIMUM_CONFIRMATIONS) {
+                        System.out.println("Transaction input refers to an immature UTXO: " + input.transactionOutputId);
+                        return false;
+                    }
+                    if (!spentInBlock.add(input.transactionOutputId)) {
+                        System.out.println("Block validation failed: UTXO spent twice in the block: " + input.transactionOutputId);
+                        return false;
+                    }
                     input.UTXO = utxo;  // Link the UTXO to the input
                     System.out.println("Transaction input references UTXO ID: " + input.transactionOutputId + " with value: " + utxo.value);
                 }
@@ -131,16 +257,98 @@ public class Blockchain {
                 System.out.println("Skipping UTXO validation for zero-value transaction.");
             }
         }
+        if (!checkBlockValue(block)) {
+            return false;
+        }
         chain.add(block);
+        chainIndex.connect(block);
+        tipHash = block.getHash();
         System.out.println("Block added to the chain successfully: " + block.getHash());
-        updateUTXOs(block, true);  // Since you're adding the block to the chain, update UTXO pool for main chain
-        ageUTXOs();  // Increment confirmations for all UTXOs
-        //System.out.println("UTXOs aged and updated.");
+        BlockUndo undo;
+        List<TransactionOutput> snapshot = null;
+        synchronized (unconfirmedTransactions) { // Admission must not see the block's spends without its pool cleanup
+            undo = updateUTXOs(block, true);  // Since you're adding the block to the chain, update UTXO pool for main chain
+            undoRecords.add(undo);
+            UTXOs.setTipHeight(block.getIndex()); // Ages every UTXO by one block at once
+            unconfirmedTransactions.removeConfirmed(block.getTransactions()); // Confirmed transactions and their conflicts leave the pool
+            if (chainStore != null && block.getIndex() % Constants.UTXO_SNAPSHOT_INTERVAL == 0) {
+                // Template coinbases are in the set before their block exists; only confirmed outputs belong in a snapshot
+                snapshot = UTXOs.values().stream().filter(output -> output.height >= 0).toList();
+            }
+        }
+        if (chainStore != null) {
+            chainStore.append(block, undo);
+            if (snapshot != null) {
+                chainStore.writeSnapshot(block.getIndex(), block.getHash(), snapshot);
+            }
+        }
+        promoteOrphans();
         return true;
     }
 
-    // New method for adding a transaction and handling the logic for broadcasting and mining
-    public synchronized void handleNewTransaction(Transaction transaction, String peerIp, NetworkManager networkManager, ForkResolution forkResolution) {
+    // The miner is paid only through a single coinbase in first position, at most the reward plus the fees of the block's
+    // transactions, and every other transaction must fund its outputs and its fee from its inputs (linked by the caller)
+    private boolean checkBlockValue(Block block) {
+        List<Transaction> transactions = block.getTransactions();
+        if (transactions.isEmpty() || !"COINBASE".equals(transactions.get(0).sender) || !transactions.get(0).getInputs().isEmpty()) {
+            System.out.println("Block validation failed: the first transaction must be a coinbase without inputs.");
+            return false;
+        }
+        float fees = 0;
+        for (int i = 1; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            if ("COINBASE".equals(transaction.sender)) {
+                System.out.println("Block validation failed: more than one coinbase transaction.");
+                return false;
+            }
+            if (transaction.fee < 0) {
+                System.out.println("Block validation failed: negative fee in transaction " + transaction.transactionId);
+                return false;
+            }
+            if (!fundsOutputs(transaction)) {
+                System.out.println("Block validation failed: transaction " + transaction.transactionId + " pays out more than its inputs minus its fee.");
+                return false;
+            }
+            fees += transaction.fee; // Same order as createBlockTemplate, so the float sum matches the miner's exactly
+        }
+        Transaction coinbase = transactions.get(0);
+        float maxReward = Constants.MINING_REWARD + fees;
+        double paid = 0;
+        for (TransactionOutput output : coinbase.outputs) {
+            paid += output.value;
+        }
+        if (coinbase.value > maxReward || paid > maxReward) {
+            System.out.println("Block validation failed: coinbase pays " + Math.max(coinbase.value, paid) + ", more than the reward plus fees " + maxReward);
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean fundsOutputs(Transaction transaction) {
+        if (transaction.value == 0) {
+            // Zero-value transactions spend nothing, so they can neither create coins nor pay a fee
+            return transaction.outputs.isEmpty() && transaction.fee == 0;
+        }
+        double inputSum = 0;
+        for (TransactionInput input : transaction.getInputs()) {
+            inputSum += input.UTXO.value;
+        }
+        double outputSum = 0;
+        for (TransactionOutput output : transaction.outputs) {
+            outputSum += output.value;
+        }
+        // processTransaction derives the change in float arithmetic, so allow its rounding error
+        double slack = Math.ulp((float) inputSum) * (transaction.outputs.size() + 1);
+        return outputSum + transaction.fee <= inputSum + slack;
+    }
+
+    // Entry point for new transactions from peers (peerIp) or the local wallet (null); admission continues asynchronously
+    public CompletableFuture<Boolean> handleNewTransaction(Transaction transaction, String peerIp) {
+        return transactionAdmission.submit(transaction, peerIp);
+    }
+
+    // Final admission stage, after the stateless checks passed: add to the pool, relay and wake the miner, or park as an orphan
+    boolean acceptTransaction(Transaction transaction, String peerIp) {
         if (addTransaction(transaction)) {
             System.out.println("Transaction validated and added to pool.");
             String jsonTransaction = new Gson().toJson(transaction);
@@ -151,14 +359,30 @@ public class Blockchain {
                 networkManager.broadcastMessageExceptSender(message, peerIp);
             }
 
-            if (unconfirmedTransactions.size() >= getNumTransactionsToMine()) {
-                System.out.println("Enough transactions in the pool. Starting mining...");
-                startMining(getNumTransactionsToMine(), forkResolution);
-            } else {
-                System.out.println(unconfirmedTransactions.size() + " transactions in the pool, NOT ENOUGH.");
+            if (miningScheduler != null) {
+                miningScheduler.notifyNewTransaction(); // Let the miner pick it up in a refreshed template
             }
         } else {
             System.out.println("Transaction failed to validate.");
+            List<String> unspendable = transaction.getUnspendableInputs();
+            // Only hold on to properly signed transactions, so garbage can't crowd out real payments
+            if (!unspendable.isEmpty() && transaction.verifySignature()) {
+                orphanTransactions.add(transaction, unspendable);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    // Retry orphans whose inputs the last block made spendable (created, or aged to MINIMUM_CONFIRMATIONS)
+    private void promoteOrphans() {
+        List<Transaction> ready = orphanTransactions.takeReady(outpoint -> {
+            TransactionOutput utxo = UTXOs.get(outpoint);
+            return utxo != null && utxo.getConfirmations() >= MINIMUM_CONFIRMATIONS;
+        });
+        for (Transaction transaction : ready) {
+            System.out.println("Retrying orphan transaction " + transaction.transactionId);
+            handleNewTransaction(transaction, null);
         }
     }
 
@@ -169,24 +393,12 @@ public class Blockchain {
         receivedBlockHashes.add(blockHash); // Add the new block hash
     }
 
-    public void ageUTXOs() {
-        for (TransactionOutput utxo : Blockchain.UTXOs.values()) {
-            Block containingBlock = getBlockByTransactionId(utxo.parentTransactionId);
-            if (isBlockInMainChain(containingBlock)) {
-                if (utxo.confirmations < MINIMUM_CONFIRMATIONS) {
-                    utxo.confirmations++;
-                    System.out.println("UTXO with ID: " + utxo.id + " now has " + utxo.confirmations + " confirmations.");
-                } else {
-                    System.out.println("UTXO with ID: " + utxo.id + " has reached "+MINIMUM_CONFIRMATIONS+" confirmations.");
-                }
-            }
-        }
-    }
-
-    void updateUTXOs(Block block, boolean isMainChain) {
+    // Applies the block to the UTXO set and returns what has to be put back to disconnect it again
+    private BlockUndo updateUTXOs(Block block, boolean isMainChain) {
+        BlockUndo undo = new BlockUndo();
         if (!isMainChain) {
             System.out.println("Block is part of a fork, not adding UTXOs.");
-            return;
+            return undo;
         }
         for (Transaction transaction : block.getTransactions()) {
             if (transaction.value == 0) {
@@ -198,9 +410,9 @@ public class Blockchain {
             for (TransactionInput input : transaction.getInputs()) {
                 TransactionOutput utxo = Blockchain.UTXOs.get(input.transactionOutputId);
                 if (utxo != null) {
-                    System.out.println("UTXO found for input: " + input.transactionOutputId + " | Confirmations: " + utxo.confirmations);
-                    if (utxo.confirmations >= MINIMUM_CONFIRMATIONS) {
-                        Blockchain.UTXOs.remove(input.transactionOutputId);
+                    System.out.println("UTXO found for input: " + input.transactionOutputId + " | Confirmations: " + utxo.getConfirmations());
+                    if (utxo.getConfirmations() >= MINIMUM_CONFIRMATIONS) {
+                        undo.addSpent(Blockchain.UTXOs.remove(input.transactionOutputId));
                         System.out.println("UTXO removed: " + input.transactionOutputId);
                     } else {
                         System.out.println("Attempted to spend immature UTXO: " + input.transactionOutputId + ". Ignored.");
@@ -212,89 +424,41 @@ public class Blockchain {
 
             // Add new UTXOs created by the transaction
             for (TransactionOutput output : transaction.getOutputs()) {
+                output.height = block.getIndex(); // Confirmations are counted from here
                 if (!Blockchain.UTXOs.containsKey(output.id)) {
-                    Blockchain.UTXOs.put(output.id, output);
                     System.out.println("UTXO added: " + output.id + " | Recipient: " + output.recipient + " | Value: " + output.value);
                 } else {
-                    System.out.println("UTXO already exists: " + output.id + " | Skipping.");
+                    System.out.println("UTXO already exists: " + output.id + " | Confirming it at height " + output.height);
                 }
+                Blockchain.UTXOs.put(output.id, output); // Replaces an unconfirmed template coinbase with the connected one
             }
         }
+        return undo;
     }
 
-    synchronized void revertUTXOs(Block block) {
-        int currentChainLength = this.getChain().size(); // Get the current length of the blockchain
+    // Exact inverse of updateUTXOs using the block's undo record. Spent outputs were at least MINIMUM_CONFIRMATIONS old,
+    // so none of them was created by the block itself and the two steps can't interfere.
+    private void revertUTXOs(Block block, BlockUndo undo) {
         for (Transaction transaction : block.getTransactions()) {
-            // Step 1: Remove outputs created by this block's transactions
             for (TransactionOutput output : transaction.getOutputs()) {
                 Blockchain.UTXOs.remove(output.id);
-                System.out.println("Reverted UTXO removed: " + output.id);
-            }
-
-            // Step 2: Re-add inputs that were used in this block's transactions
-            for (TransactionInput input : transaction.getInputs()) {
-                if (input.UTXO != null) {
-                    TransactionOutput revertedOutput = input.UTXO;
-
-                    // Find the block containing the transaction that created this UTXO
-                    Block blockContainingUTXO = getBlockByTransactionId(revertedOutput.parentTransactionId);
-                    if (blockContainingUTXO != null) {
-                        int blockIndexContainingUTXO = blockContainingUTXO.getIndex();
-                        int realConfirmationCount = currentChainLength - blockIndexContainingUTXO;
-
-                        if (realConfirmationCount <= Blockchain.MINIMUM_CONFIRMATIONS) {
-                            // Only decrement if the confirmation count is within the minimum threshold
-                            if (revertedOutput.confirmations > 0) {
-                                revertedOutput.confirmations--;
-                                System.out.println("Decremented confirmations for UTXO: " + input.transactionOutputId);
-                            }
-                        } else {
-                            // If the "real" confirmation count exceeds the threshold, leave it as is
-                            System.out.println("UTXO with ID: " + input.transactionOutputId + " remains at max confirmations.");
-                        }
-                    } else {
-                        System.out.println("Error: Block containing UTXO not found during revert: " + input.transactionOutputId);
-                    }
-
-                    Blockchain.UTXOs.put(input.transactionOutputId, revertedOutput);
-                    System.out.println("Reverted UTXO re-added: " + input.transactionOutputId);
-                } else {
-                    System.out.println("Error: UTXO missing for input during revert: " + input.transactionOutputId);
-                }
             }
         }
-    }
-
-    public void recalculateUTXOConfirmations() {
-        System.out.println("Recalculating UTXO confirmations based on the local blockchain state...");
-        // Reset confirmations for all UTXOs to zero initially
-        for (TransactionOutput utxo : Blockchain.UTXOs.values()) {
-            utxo.confirmations = 0;
+        for (TransactionOutput spent : undo.getSpentOutputs()) {
+            Blockchain.UTXOs.put(spent.id, spent);
         }
-        // Iterate over the entire blockchain to update the confirmations
-        for (int i = 0; i < chain.size(); i++) {
-            Block block = chain.get(i);
-            int confirmationsFromTip = chain.size() - i;
-
-            for (Transaction transaction : block.getTransactions()) {
-                for (TransactionOutput output : transaction.getOutputs()) {
-                    TransactionOutput utxo = Blockchain.UTXOs.get(output.id);
-                    if (utxo != null) {
-                        utxo.confirmations = Math.min(confirmationsFromTip, MINIMUM_CONFIRMATIONS);
-                        System.out.println("Updated UTXO ID: " + utxo.id + " | New confirmations: " + utxo.confirmations);
-                    }
-                }
-            }
-        }
-        System.out.println("UTXO confirmations recalculated.");
+        System.out.println("Reverted UTXOs of block " + block.getHash() + ": restored " + undo.getSpentOutputs().size() + " spent outputs.");
     }
 
     public void reAddTransactionsFromDiscardedBlocks(List<Block> discardedBlocks) {
         for (Block block : discardedBlocks) {
             for (Transaction transaction : block.getTransactions()) {
                 if (!transaction.sender.equals("COINBASE") && transaction.isStillValid()) {
-                    Blockchain.unconfirmedTransactions.add(transaction);
-                    System.out.println("Re-added valid transaction: " + transaction.transactionId);
+                    if (Blockchain.unconfirmedTransactions.add(transaction)) {
+                        System.out.println("Re-added valid transaction: " + transaction.transactionId);
+                    } else {
+                        System.out.println("Could not re-add transaction to the pool: " + transaction.transactionId);
+                    }
                 } else if (transaction.sender.equals("COINBASE")) {
                     System.out.println("Skipping re-addition of Coinbase transaction: " + transaction.transactionId);
                 } else {
@@ -307,7 +471,16 @@ public class Blockchain {
     public synchronized void removeLastBlock() {
         if (chain.size() > 1) {  // Prevent removing the genesis block
             Block lastBlock = chain.remove(chain.size() - 1);
-            revertUTXOs(lastBlock);  // Revert UTXO changes made by the block
+            BlockUndo undo = undoRecords.remove(undoRecords.size() - 1);
+            chainIndex.disconnect(lastBlock);
+            tipHash = chain.get(chain.size() - 1).getHash();
+            synchronized (unconfirmedTransactions) { // Same lock as connecting, so admission never sees a half-reverted set
+                revertUTXOs(lastBlock, undo);  // Revert UTXO changes made by the block
+                UTXOs.setTipHeight(chain.size() - 1);
+            }
+            if (chainStore != null) {
+                chainStore.truncateLast();
+            }
             System.out.println("Block removed: " + lastBlock.getHash());
         } else {
             System.out.println("Cannot remove genesis block.");
@@ -324,15 +497,45 @@ public class Blockchain {
         return new ArrayList<>(chain.subList(startIndex, Math.min(endIndex + 1, chain.size())));
     }
 
-    public Block getBlockByTransactionId(String transactionId) {
-        for (Block block : chain) {
-            for (Transaction transaction : block.getTransactions()) {
-                if (transaction.getTransactionId().equals(transactionId)) {
-                    return block;
-                }
-            }
+    public synchronized Block getBlockByTransactionId(String transactionId) {
+        ChainIndex.TxLocation location = chainIndex.getTransactionLocation(transactionId);
+        return location != null ? chain.get(location.height) : null;
+    }
+
+    public synchronized Block getBlockByHash(String hash) {
+        int height = chainIndex.getHeight(hash);
+        return height >= 0 ? chain.get(height) : null;
+    }
+
+    // Median timestamp of the MEDIAN_TIME_SPAN blocks before the given height; a new block's timestamp must exceed it
+    public synchronized long getMedianTimePast(int height) {
+        int from = Math.max(0, height - Constants.MEDIAN_TIME_SPAN);
+        long[] timestamps = new long[height - from];
+        for (int i = from; i < height; i++) {
+            timestamps[i - from] = chain.get(i).getTimestamp();
         }
-        return null;
+        Arrays.sort(timestamps);
+        return timestamps[timestamps.length / 2];
+    }
+
+    // Target for the block at the given height, retargeted every RETARGET_INTERVAL blocks to hold TARGET_BLOCK_TIME_MS
+    public synchronized int getNextBits(int height) {
+        Block previous = chain.get(height - 1);
+        int interval = Constants.RETARGET_INTERVAL;
+        if (height % interval != 0 || height - interval - 1 < 1) {
+            return previous.getBits(); // Not a retarget height, or the window would reach the genesis block (timestamp 0)
+        }
+        Block windowStart = chain.get(height - interval - 1);
+        long actualTimespan = previous.getTimestamp() - windowStart.getTimestamp();
+        int newBits = DifficultyTarget.retarget(previous.getBits(), actualTimespan, Constants.TARGET_BLOCK_TIME_MS * interval);
+        System.out.println("Retarget at height " + height + ": " + interval + " blocks took " + actualTimespan + " ms, bits "
+                + Integer.toHexString(previous.getBits()) + " -> " + Integer.toHexString(newBits));
+        return newBits;
+    }
+
+    public MerkleProof getMerkleProof(String transactionId) {
+        Block block = getBlockByTransactionId(transactionId);
+        return block != null ? block.getMerkleProof(transactionId) : null;
     }
 
     public void printChain() {
@@ -344,11 +547,16 @@ public class Blockchain {
     public int getPeerChainTipIndex() {return peerChainTipIndex;}
     public void setPeerChainTipIndex(int peerChainTipIndex) {this.peerChainTipIndex = peerChainTipIndex;}
     public int getCurrentChainTip() {return chain.size() - 1;}
-    public boolean isBlockInMainChain(Block block) { return chain.contains(block); }
-    public int getNumTransactionsToMine() {return Constants.NUM_TRANSACTIONS_TO_MINE; }
+    public boolean isBlockInMainChain(Block block) { return block != null && chainIndex.getHeight(block.getHash()) == block.getIndex(); }
+    // Before the first tip response the peers' tip is unknown, which counts as behind
+    public boolean isSyncing() {return !caughtUp || (peerChainTipIndex != -1 && getCurrentChainTip() < peerChainTipIndex);}
+    public String getTipHash() {return tipHash;}
+    public MiningMetrics getMiningMetrics() {return miningMetrics;}
+    public SignatureVerifier getSignatureVerifier() {return signatureVerifier;}
     public Deque<String> getReceivedBlockHashes() { return receivedBlockHashes; }
-    public LRUCache<String, Boolean> getReceivedTransactions() { return receivedTransactions; }
+    public Map<String, Boolean> getReceivedTransactions() { return receivedTransactions; }
     public void setNetworkManager(NetworkManager networkManager) { this.networkManager = networkManager; }
+    public void setMempoolStore(MempoolStore mempoolStore) { this.mempoolStore = mempoolStore; }
     public Block getLastBlock() {
         return chain.size() > 0 ? chain.get(chain.size() - 1) : null;
     }
@@ -366,7 +574,7 @@ public class Blockchain {
             TransactionOutput utxo = entry.getValue();
             String recipient = utxo.recipient;
             float value = utxo.value;
-            int confirmations = utxo.confirmations;
+            int confirmations = utxo.getConfirmations();
 
             // Print formatted UTXO details
             System.out.printf("%-40s %-20s %-10.2f %-15d\n", utxoId, recipient, value, confirmations);
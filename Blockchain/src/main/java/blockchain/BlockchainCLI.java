@@ -82,11 +82,23 @@ public class BlockchainCLI {
                 scanner.next(); // Consume the invalid input and retry
             }
         }
+        float fee;
+        while (true) {
+            System.out.print("Enter fee (higher fees confirm sooner, 0 for none): ");
+            if (scanner.hasNextFloat()) {
+                fee = scanner.nextFloat();
+                scanner.nextLine(); // Consume the newline character
+                break;
+            } else {
+                System.out.println("Invalid input. Please enter a valid number for the fee.");
+                scanner.next(); // Consume the invalid input and retry
+            }
+        }
         try {
-            Transaction transaction = senderWallet.sendFunds(selectedPublicKey, amount);
+            Transaction transaction = senderWallet.sendFunds(selectedPublicKey, amount, fee);
             if (transaction != null) {
                 // Use the new method in Blockchain to handle adding, broadcasting, and mining
-                blockchain.handleNewTransaction(transaction, null, networkManager, forkResolution);
+                blockchain.handleNewTransaction(transaction, null).join(); // Wait so the outcome is printed before DONE
                 System.out.println("DONE");
             } else {
                 System.out.println("Transaction creation failed.");
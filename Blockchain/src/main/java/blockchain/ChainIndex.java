@@ -0,0 +1,49 @@
+package blockchain;
+
+import ledger.Transaction;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Main chain lookups that would otherwise scan every block: transaction id -> where it was confirmed and block hash -> height.
+// Only written while the chain itself changes (under the Blockchain monitor); reads are lock-free.
+public class ChainIndex {
+    private final Map<String, TxLocation> transactions = new ConcurrentHashMap<>();
+    private final Map<String, Integer> blockHeights = new ConcurrentHashMap<>();
+
+    public static class TxLocation {
+        public final int height; // Height of the confirming block
+        public final int position; // Index of the transaction within that block, the coinbase being 0
+
+        TxLocation(int height, int position) {
+            this.height = height;
+            this.position = position;
+        }
+    }
+
+    public void connect(Block block) {
+        List<Transaction> blockTransactions = block.getTransactions();
+        for (int i = 0; i < blockTransactions.size(); i++) {
+            transactions.put(blockTransactions.get(i).getTransactionId(), new TxLocation(block.getIndex(), i));
+        }
+        blockHeights.put(block.getHash(), block.getIndex());
+    }
+
+    public void disconnect(Block block) {
+        for (Transaction transaction : block.getTransactions()) {
+            // Leave the entry alone if the transaction is (also) confirmed at another height
+            transactions.computeIfPresent(transaction.getTransactionId(),
+                    (id, location) -> location.height == block.getIndex() ? null : location);
+        }
+        blockHeights.remove(block.getHash(), block.getIndex());
+    }
+
+    public TxLocation getTransactionLocation(String transactionId) {
+        return transactions.get(transactionId);
+    }
+
+    // Height of a main chain block, or -1 if the hash is not on the main chain
+    public int getHeight(String blockHash) {
+        return blockHash != null ? blockHeights.getOrDefault(blockHash, -1) : -1;
+    }
+}
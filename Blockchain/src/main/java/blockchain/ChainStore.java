@@ -0,0 +1,344 @@
+package blockchain;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import ledger.Transaction;
+import ledger.TransactionOutput;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Keeps the main chain and its UTXO set on disk so a restarted node continues from its last block instead of genesis.
+//  - blocks.dat is an append-only log with one checksummed record per connected block: the block and its undo record.
+//    A record counts only once it is completely written and synced, so it doubles as the per-block commit marker;
+//    a torn record left by a crash is cut off on the next open. Disconnecting a block truncates its record.
+//  - utxo.snapshot is the whole UTXO set at one height, keyed by output id, rewritten every UTXO_SNAPSHOT_INTERVAL
+//    blocks. Opening loads it and replays only the blocks after it, without validating them again.
+public class ChainStore {
+    private static final int SNAPSHOT_MAGIC = 0x5554584f; // "UTXO"
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Long.BYTES; // Length prefix and CRC32
+    private static final byte RAW_HASH = 0; // Id stored as 32 raw bytes
+    private static final byte STRING_ID = 1; // Id that isn't a lowercase SHA-256 hex string, stored as a length-prefixed string
+    private final Path blockFile;
+    private final Path snapshotFile;
+    private final Gson gson = new Gson();
+    private final List<Long> recordOffsets = new ArrayList<>(); // Start of each block's record, index = height - 1
+    private final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "utxo-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private FileChannel blockLog;
+
+    // What open() read back: the blocks after genesis with their undo records, and the UTXO set at the last of them
+    public static class Loaded {
+        public final List<Block> blocks = new ArrayList<>();
+        public final List<BlockUndo> undoRecords = new ArrayList<>();
+        public final Map<String, TransactionOutput> utxos = new HashMap<>();
+    }
+
+    public ChainStore(String directory) {
+        this.blockFile = Paths.get(directory, "blocks.dat");
+        this.snapshotFile = Paths.get(directory, "utxo.snapshot");
+    }
+
+    public synchronized Loaded open(Block genesis) {
+        Loaded loaded = new Loaded();
+        long start = System.currentTimeMillis();
+        try {
+            Files.createDirectories(blockFile.getParent());
+            long validLength = readBlocks(genesis, loaded);
+            blockLog = FileChannel.open(blockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (blockLog.size() > validLength) {
+                System.out.println("Discarding " + (blockLog.size() - validLength) + " bytes of incomplete block records.");
+                blockLog.truncate(validLength);
+                blockLog.force(true);
+            }
+            blockLog.position(validLength);
+        } catch (IOException e) {
+            System.err.println("Error opening chain store, running without persistence: " + e.getMessage());
+            recordOffsets.clear();
+            close();
+            return new Loaded();
+        }
+        int replayFrom = loadSnapshot(loaded);
+        for (int i = replayFrom; i < loaded.blocks.size(); i++) {
+            replay(loaded.blocks.get(i), loaded.undoRecords.get(i), loaded.utxos);
+        }
+        System.out.println("Loaded " + loaded.blocks.size() + " blocks and " + loaded.utxos.size() + " UTXOs from disk in "
+                + (System.currentTimeMillis() - start) + " ms (" + (loaded.blocks.size() - replayFrom) + " blocks replayed).");
+        return loaded;
+    }
+
+    // Reads records up to the first one that is incomplete, corrupt or doesn't extend the chain, returning where it starts
+    private long readBlocks(Block genesis, Loaded loaded) throws IOException {
+        if (!Files.exists(blockFile)) {
+            return 0;
+        }
+        long position = 0;
+        long fileLength = Files.size(blockFile);
+        String previousHash = genesis.getHash();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(blockFile)))) {
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0 || length > fileLength - position - RECORD_OVERHEAD) {
+                        break; // Corrupt length field, or a record cut short by a crash
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    if (in.readLong() != checksum(payload)) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                Block block;
+                BlockUndo undo = new BlockUndo();
+                try {
+                    block = decodeRecord(payload, undo);
+                } catch (IOException | JsonParseException e) {
+                    break;
+                }
+                if (block.getIndex() != loaded.blocks.size() + 1 || !block.getPreviousHash().equals(previousHash)) {
+                    break;
+                }
+                loaded.blocks.add(block);
+                loaded.undoRecords.add(undo);
+                recordOffsets.add(position);
+                position += RECORD_OVERHEAD + payload.length;
+                previousHash = block.getHash();
+            }
+        }
+        return position;
+    }
+
+    // Fills loaded.utxos from the snapshot and returns the number of loaded blocks it already covers, or 0 if it is
+    // missing, damaged or belongs to a chain we no longer have
+    private int loadSnapshot(Loaded loaded) {
+        if (!Files.exists(snapshotFile)) {
+            return 0;
+        }
+        Map<String, TransactionOutput> utxos = new HashMap<>();
+        int height;
+        try (CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)), new CRC32());
+             DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("not a UTXO snapshot");
+            }
+            height = in.readInt();
+            String tipHash = readId(in);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                TransactionOutput output = readOutput(in);
+                utxos.put(output.id, output);
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("checksum mismatch");
+            }
+            if (height < 1 || height > loaded.blocks.size() || !loaded.blocks.get(height - 1).getHash().equals(tipHash)) {
+                System.out.println("UTXO snapshot at height " + height + " is not on the stored chain, rebuilding from the blocks.");
+                return 0;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading UTXO snapshot, rebuilding from the blocks: " + e.getMessage());
+            return 0;
+        }
+        loaded.utxos.putAll(utxos);
+        return height;
+    }
+
+    // Applies a stored block to the UTXO set the way Blockchain.updateUTXOs did when it was connected
+    private static void replay(Block block, BlockUndo undo, Map<String, TransactionOutput> utxos) {
+        for (TransactionOutput spent : undo.getSpentOutputs()) {
+            utxos.remove(spent.id);
+        }
+        for (Transaction transaction : block.getTransactions()) {
+            for (TransactionOutput output : transaction.getOutputs()) {
+                output.height = block.getIndex();
+                utxos.put(output.id, output);
+            }
+        }
+    }
+
+    // Durably appends a block that was just connected; it is committed once this returns
+    public synchronized void append(Block block, BlockUndo undo) {
+        if (blockLog == null) {
+            return;
+        }
+        try {
+            byte[] payload = encodeRecord(block, undo);
+            ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + payload.length);
+            record.putInt(payload.length).put(payload).putLong(checksum(payload)).flip();
+            long offset = blockLog.position();
+            while (record.hasRemaining()) {
+                blockLog.write(record);
+            }
+            blockLog.force(false);
+            recordOffsets.add(offset);
+        } catch (IOException e) {
+            System.err.println("Error writing block " + block.getIndex() + " to the chain store, persistence disabled: " + e.getMessage());
+            close();
+        }
+    }
+
+    // Drops the record of the block that was just disconnected
+    public synchronized void truncateLast() {
+        if (blockLog == null || recordOffsets.isEmpty()) {
+            return;
+        }
+        try {
+            long offset = recordOffsets.remove(recordOffsets.size() - 1);
+            blockLog.truncate(offset);
+            blockLog.position(offset);
+            blockLog.force(true);
+        } catch (IOException e) {
+            System.err.println("Error truncating the chain store, persistence disabled: " + e.getMessage());
+            close();
+        }
+    }
+
+    // Writes the snapshot in the background from a copy of the set taken by the caller, so block connection doesn't wait.
+    // The temporary file is synced before it atomically replaces the old snapshot, which stays valid until then.
+    public void writeSnapshot(int height, String tipHash, List<TransactionOutput> utxos) {
+        snapshotWriter.submit(() -> {
+            Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+                CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file), new CRC32());
+                DataOutputStream out = new DataOutputStream(checked);
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(height);
+                writeId(out, tipHash);
+                out.writeInt(utxos.size());
+                for (TransactionOutput output : utxos) {
+                    writeOutput(out, output);
+                }
+                out.writeLong(checked.getChecksum().getValue());
+                out.flush();
+                file.getFD().sync();
+            } catch (IOException e) {
+                System.err.println("Error writing UTXO snapshot: " + e.getMessage());
+                return;
+            }
+            try {
+                Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                System.out.println("Saved UTXO snapshot at height " + height + " (" + utxos.size() + " outputs).");
+            } catch (IOException e) {
+                System.err.println("Error writing UTXO snapshot: " + e.getMessage());
+            }
+        });
+    }
+
+    private synchronized void close() {
+        if (blockLog != null) {
+            try {
+                blockLog.close();
+            } catch (IOException ignored) {
+            }
+            blockLog = null;
+        }
+    }
+
+    // Record payload: the block as JSON, as on the wire, followed by the outputs it spent
+    private byte[] encodeRecord(Block block, BlockUndo undo) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] json = gson.toJson(block).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(json.length);
+        out.write(json);
+        out.writeInt(undo.getSpentOutputs().size());
+        for (TransactionOutput spent : undo.getSpentOutputs()) {
+            writeOutput(out, spent);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Block decodeRecord(byte[] payload, BlockUndo undo) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte[] json = new byte[in.readInt()];
+        in.readFully(json);
+        Block block = gson.fromJson(new String(json, StandardCharsets.UTF_8), Block.class);
+        int spentCount = in.readInt();
+        for (int i = 0; i < spentCount; i++) {
+            undo.addSpent(readOutput(in));
+        }
+        return block;
+    }
+
+    private static void writeOutput(DataOutputStream out, TransactionOutput output) throws IOException {
+        writeId(out, output.id);
+        writeString(out, output.recipient);
+        out.writeFloat(output.value);
+        writeString(out, output.parentTransactionId);
+        out.writeInt(output.height);
+    }
+
+    private static TransactionOutput readOutput(DataInputStream in) throws IOException {
+        return new TransactionOutput(readId(in), readString(in), in.readFloat(), readString(in), in.readInt());
+    }
+
+    // Output ids and block hashes are normally SHA-256 hex strings, stored as their 32 raw bytes. The UTXO set accepts
+    // any other id too, so those are stored as strings instead of failing the write and with it all persistence.
+    private static void writeId(DataOutputStream out, String id) throws IOException {
+        byte[] hash = Sha256Hash.isHex(id) ? StringUtil.hexToBytes(id) : null;
+        if (hash != null && StringUtil.bytesToHex(hash).equals(id)) {
+            out.writeByte(RAW_HASH);
+            out.write(hash);
+        } else {
+            out.writeByte(STRING_ID);
+            writeString(out, id);
+        }
+    }
+
+    private static String readId(DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        if (kind == STRING_ID) {
+            return readString(in);
+        }
+        if (kind != RAW_HASH) {
+            throw new IOException("unknown id encoding " + kind);
+        }
+        byte[] hash = new byte[Sha256Hash.LENGTH];
+        in.readFully(hash);
+        return StringUtil.bytesToHex(hash);
+    }
+
+    // UTF-8 with an int length, -1 for null; unlike writeUTF this has no 64 KB limit, as peers choose these strings
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = in.readNBytes(length); // Grows as it reads, so a corrupt length can't make us allocate it all up front
+        if (bytes.length != length) {
+            throw new EOFException();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue();
+    }
+}
@@ -6,16 +6,50 @@ public class Constants {
     public static final int MAX_RETRIES = 3; // Maximum retry attempts for networking
 
     // Mining Constants
+    public static final int BLOCK_VERSION = 1; // Version field written into every block header
     public static final float MINING_REWARD = 6.00f; // Mining reward per block mined
-    public static final int NUM_TRANSACTIONS_TO_MINE = 2; // Number of transactions to mine per block
-    public static final int MINING_DIFFICULTY = 6; // Mining difficulty (how many leading zeros in the hash)
+    public static final int MAX_BLOCK_SIZE = 1_000_000; // Upper bound on the serialized block size in bytes
+    public static final int BLOCK_HEADER_OVERHEAD = 400; // Serialized size of a block without its transactions
+    public static final int COINBASE_SIZE_RESERVE = 1000; // Room kept for the coinbase, which is built after the fees are known
+    public static final long MEMPOOL_MAX_BYTES = 64L * 1024 * 1024; // Heap the unconfirmed transaction pool may retain
+    public static final long MEMPOOL_EXPIRY_MS = 24 * 60 * 60 * 1000L; // Drop transactions still unconfirmed after a day
+    public static final double MEMPOOL_MIN_FEE_RATE_INCREMENT = 0.00001; // Once full, new transactions must beat the last evicted one by this
+    public static final int ADMISSION_THREADS = Runtime.getRuntime().availableProcessors(); // Workers for the stateless transaction checks
+    public static final int SIGNATURE_THREADS = Runtime.getRuntime().availableProcessors(); // Workers verifying block signatures
+    public static final int SIGNATURE_CACHE_SIZE = 100_000; // Verified signatures remembered across mempool, blocks and reorgs
+    public static final int PUBLIC_KEY_CACHE_SIZE = 10_000; // Decoded sender keys kept by StringUtil
+    public static final int MAX_ORPHAN_TRANSACTIONS = 100; // Transactions held back because their inputs aren't spendable yet
+    public static final long ORPHAN_TTL_MS = 20 * 60 * 1000L; // Give up on an orphan after 20 minutes
+    public static final long MEMPOOL_MIN_FEE_HALF_LIFE_MS = 10 * 60 * 1000L; // The raised minimum fee rate halves every 10 minutes
+    public static final long TEMPLATE_REFRESH_MS = 10000; // Rebuild the block template at least this often
+    public static final int INITIAL_DIFFICULTY_BITS = 0x1e010000; // Compact target of the genesis block, about 6 leading hex zeros
+    public static final int MAX_TARGET_BITS = 0x1f00ffff; // Easiest allowed target, about 4 leading hex zeros
+    public static final long TARGET_BLOCK_TIME_MS = 30000; // Block interval the retargeting aims for
+    public static final int RETARGET_INTERVAL = 10; // Recompute the target every 10 blocks
+    public static final int MAX_RETARGET_FACTOR = 4; // The target moves at most 4x per retarget
+    public static final int MEDIAN_TIME_SPAN = 11; // Block timestamps must be later than the median of this many previous blocks
+    public static final long MAX_FUTURE_BLOCK_TIME_MS = 2 * 60 * 60 * 1000L; // and no more than two hours ahead of our clock
+    public static final int MINING_THREADS = Runtime.getRuntime().availableProcessors(); // Worker threads for the nonce search
+    public static final boolean VECTOR_MINING = true; // Use the SIMD SHA-256 kernel when the JVM runs with --add-modules jdk.incubator.vector
 
     // Networking
     public static final int NODE_PORT = 7777; // Node's listening port
     public static final String SEED_NODE_ADDRESS = "172.18.0.2"; // Seed node IP address
+    public static final boolean WORK_SERVER_ENABLED = true; // Serve block templates to external miner processes
+    public static final String WORK_SERVER_ADDRESS = "127.0.0.1"; // Only local workers by default; use 0.0.0.0 for sibling containers
+    public static final int WORK_SERVER_PORT = 7780; // Port external miners connect to
+    public static final long WORK_RANGE_SIZE = 1L << 28; // Nonces per work unit, 16 units per header timestamp
+    public static final int MAX_WORK_JOBS = 1000; // Issued work units remembered for validating submissions
+    public static final boolean METRICS_ENABLED = true; // Serve mining metrics over HTTP for local scraping
+    public static final String METRICS_ADDRESS = "127.0.0.1"; // Metrics are only reachable from the node's host by default
+    public static final int METRICS_PORT = 9100; // GET http://127.0.0.1:9100/metrics
 
     // Wallet
     public static final String WALLET_FILE = "wallet.dat";  // File to store wallet keys
+    public static final String MEMPOOL_FILE = "mempool.json.gz"; // Pending transactions saved across restarts
+    public static final long MEMPOOL_SAVE_INTERVAL_MS = 60000; // Also saved on shutdown
+    public static final String CHAIN_STORE_DIR = "chainstate"; // Block log and UTXO snapshots, so restarts don't resync from genesis
+    public static final int UTXO_SNAPSHOT_INTERVAL = 100; // Blocks between UTXO snapshots; at most this many are replayed on startup
 
     // Transaction Constants
     public static final float MINIMUM_TRANSACTION = 0.0f;  // Minimum allowed transaction value
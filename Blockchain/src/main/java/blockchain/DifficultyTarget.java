@@ -0,0 +1,56 @@
+package blockchain;
+
+import java.math.BigInteger;
+
+// Compact "bits" encoding of the proof-of-work target: the top byte is the size in bytes, the lower three bytes the mantissa
+public class DifficultyTarget {
+    private static final BigInteger MAX_TARGET = decodeCompact(Constants.MAX_TARGET_BITS);
+
+    public static BigInteger decodeCompact(int bits) {
+        int size = bits >>> 24;
+        BigInteger mantissa = BigInteger.valueOf(bits & 0x007fffff);
+        return size <= 3 ? mantissa.shiftRight(8 * (3 - size)) : mantissa.shiftLeft(8 * (size - 3));
+    }
+
+    public static int encodeCompact(BigInteger target) {
+        int size = (target.bitLength() + 7) / 8;
+        int compact = size <= 3 ? target.intValue() << 8 * (3 - size) : target.shiftRight(8 * (size - 3)).intValue();
+        if ((compact & 0x00800000) != 0) { // The mantissa is signed, keep it positive by moving one byte into the size
+            compact >>>= 8;
+            size++;
+        }
+        return compact | (size << 24);
+    }
+
+    // Expands the compact target into 32 big-endian bytes so it can be compared directly against a hash
+    public static byte[] toTargetBytes(int bits) {
+        byte[] target = new byte[Sha256Hash.LENGTH];
+        byte[] magnitude = decodeCompact(bits).toByteArray(); // May carry a leading sign byte
+        int length = Math.min(magnitude.length, Sha256Hash.LENGTH);
+        System.arraycopy(magnitude, magnitude.length - length, target, Sha256Hash.LENGTH - length, length);
+        return target;
+    }
+
+    // A hash satisfies the proof of work when, read as an unsigned 256-bit number, it does not exceed the target
+    public static boolean meetsTarget(byte[] hash, byte[] target) {
+        for (int i = 0; i < Sha256Hash.LENGTH; i++) {
+            int h = hash[i] & 0xff;
+            int t = target[i] & 0xff;
+            if (h != t) return h < t;
+        }
+        return true;
+    }
+
+    // Scales the target by how far the observed timespan drifted from the expected one, clamped to avoid wild swings
+    public static int retarget(int bits, long actualTimespan, long expectedTimespan) {
+        long factor = Constants.MAX_RETARGET_FACTOR;
+        long timespan = Math.max(expectedTimespan / factor, Math.min(actualTimespan, expectedTimespan * factor));
+        BigInteger newTarget = decodeCompact(bits)
+                .multiply(BigInteger.valueOf(timespan))
+                .divide(BigInteger.valueOf(expectedTimespan));
+        if (newTarget.compareTo(MAX_TARGET) > 0) {
+            newTarget = MAX_TARGET; // Never easier than the minimum difficulty
+        }
+        return encodeCompact(newTarget);
+    }
+}
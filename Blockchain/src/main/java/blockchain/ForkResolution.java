@@ -23,11 +23,16 @@ public class ForkResolution implements Runnable {
         while (true) {
             try {
                 Block block = blockQueue.take();  // Blocks until a block is available in the queue
-                processBlock(block);
-                // Check if we need to recalculate UTXOs after syncing completes
+                try {
+                    processBlock(block);
+                } catch (RuntimeException e) {
+                    // A malformed block from a peer must not stop consensus for every block after it
+                    System.err.println("ForkResolution failed to process block " + block.getHash() + ": " + e);
+                }
+                // Confirmations follow the tip height, so there is nothing to recalculate once syncing completes
                 if (isSyncComplete()) {
-                    blockchain.recalculateUTXOConfirmations();  // Recalculate UTXOs after sync completes
                     blockchain.setPeerChainTipIndex(-1);
+                    blockchain.markCaughtUp(); // The UTXO set is current now, so the saved pool can be revalidated
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -48,6 +53,7 @@ public class ForkResolution implements Runnable {
             // If the block's previous hash doesn't match the current last block's hash
             if (!block.getPreviousHash().equals(lastBlock.getHash())) {
                 System.out.println("Potential fork detected. Storing block for further validation: " + block.getHash());
+                blockchain.getMiningMetrics().blockRejected(block.getHash());
                 addBlockToForks(block);  // Handle as a fork
             } else {
                 // Valid next block in our current chain
@@ -56,12 +62,14 @@ public class ForkResolution implements Runnable {
                     checkForksForExtension(block); // Check if there's a fork that extends this chain
                 } else {
                     System.out.println("ForkResolution Block failed validation: " + block.getHash());
+                    blockchain.getMiningMetrics().blockRejected(block.getHash());
                 }
             }
         }
         // Block is already in the chain (same index or earlier) - fork
         else if (blockIndex <= lastBlock.getIndex()) {
             System.out.println("ForkResolution Block index already present, adding to forked blocks: " + blockIndex);
+            blockchain.getMiningMetrics().blockRejected(block.getHash());
             addBlockToForks(block);
             checkForLongerFork(blockIndex);  // Check if there's a longer competing chain
         }
@@ -167,11 +175,10 @@ public class ForkResolution implements Runnable {
                 System.out.println("Fork block failed validation: " + block.getHash());
                 return; // Abort if fork chain is invalid
             }
-            System.out.println("Fork block added to the chain: " + block.getHash());
-            // Ensure UTXOs and confirmations are updated correctly for each block
-            blockchain.updateUTXOs(block, true);
-            blockchain.ageUTXOs();  // Increment confirmations as each block is re-added
+            System.out.println("Fork block added to the chain: " + block.getHash()); // UTXOs were updated while connecting it
         }
+        // Pending transactions may spend outputs of the discarded blocks that the new chain doesn't have
+        Blockchain.unconfirmedTransactions.removeIf(transaction -> !transaction.isStillValid());
     }
 
     // Rollback the blockchain to a certain index (fork point), returning discarded blocks
@@ -181,8 +188,8 @@ public class ForkResolution implements Runnable {
         while (blockchain.getLastBlock().getIndex() > forkIndex) {
             Block discardedBlock = blockchain.getLastBlock();
             discardedBlocks.add(discardedBlock);
-            blockchain.revertUTXOs(discardedBlock);
-            blockchain.removeLastBlock();
+            blockchain.removeLastBlock(); // Also reverts its UTXO changes from the block's undo record
+            blockchain.getMiningMetrics().blockDiscarded(discardedBlock.getHash());
             System.out.println("Discarded block: " + discardedBlock.getHash());
         }
         return discardedBlocks;
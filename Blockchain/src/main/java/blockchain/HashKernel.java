@@ -0,0 +1,48 @@
+package blockchain;
+
+// Searches a batch of nonces for a header hash that meets the target
+public interface HashKernel {
+    // Returns the first nonce in [from, from + count) whose header hash meets the target, or -1 if there is none
+    long search(BlockHeader header, long from, int count, byte[] target);
+
+    String getName();
+
+    // Kernels that compute SHA-256 themselves must reproduce the JCA digest bit for bit before they are used
+    default boolean selfTest() {return true;}
+
+    // Picks the SIMD kernel when the incubator Vector API is present and passed its self-test, the scalar one otherwise
+    static HashKernel create() {
+        if (Selector.USE_VECTOR) {
+            try {
+                return newVectorKernel();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("Vector mining kernel unavailable, using scalar SHA-256: " + e);
+            }
+        }
+        return new ScalarHashKernel();
+    }
+
+    // Loaded by name so the node still links and runs without --add-modules jdk.incubator.vector
+    private static HashKernel newVectorKernel() throws ReflectiveOperationException {
+        return (HashKernel) Class.forName("blockchain.VectorSha256Kernel").getDeclaredConstructor().newInstance();
+    }
+
+    final class Selector {
+        static final boolean USE_VECTOR = detect(); // Resolved once per JVM
+
+        private static boolean detect() {
+            if (!Constants.VECTOR_MINING || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+                return false;
+            }
+            try {
+                if (newVectorKernel().selfTest()) {
+                    return true;
+                }
+                System.err.println("Vector SHA-256 kernel failed its self-test, using scalar SHA-256.");
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("Vector mining kernel unavailable, using scalar SHA-256: " + e);
+            }
+            return false;
+        }
+    }
+}
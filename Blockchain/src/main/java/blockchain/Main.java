@@ -1,6 +1,9 @@
 package blockchain;
 
+import networking.MetricsServer;
 import networking.NetworkManager;
+import networking.WorkServer;
+import ledger.MempoolStore;
 import ledger.Wallet;
 import java.net.Inet4Address;
 import java.net.InetAddress;
@@ -22,10 +25,14 @@ public class Main {
         minerAddress = StringUtil.getStringFromKey(senderWallet.publicKey);
 
         Blockchain blockchain = new Blockchain();
+        blockchain.openChainStore(new ChainStore(Constants.CHAIN_STORE_DIR)); // Resume from the blocks saved by the previous run
         ForkResolution forkResolution = new ForkResolution(blockchain);
         new Thread(forkResolution).start();
         NetworkManager networkManager = new NetworkManager(senderWallet.publicKey, forkResolution);
         blockchain.setNetworkManager(networkManager);
+        MempoolStore mempoolStore = new MempoolStore(Blockchain.unconfirmedTransactions, Constants.MEMPOOL_FILE);
+        blockchain.setMempoolStore(mempoolStore);
+        mempoolStore.startAutoSave(Constants.MEMPOOL_SAVE_INTERVAL_MS);
         networkManager.setBlockchain(blockchain);
 
         try {
@@ -49,11 +56,21 @@ public class Main {
                     syncTriggered = true; // Ensure we don’t trigger sync multiple times
                     networkManager.requestChainTipFromPeers();  // Ask for the blockchain tip after getting the peer list
                 }
+            } else {
+                blockchain.markCaughtUp(); // The seed node has nobody to sync from
             }
         } catch (SocketException e) {
             System.err.println("Error determining IP address: " + e.getMessage());
+            blockchain.markCaughtUp(); // No sync was requested, so don't wait for one
         }
 
+        blockchain.startMining(forkResolution);
+        if (Constants.WORK_SERVER_ENABLED) {
+            new WorkServer(blockchain, forkResolution).start(); // Let external miner processes share this node
+        }
+        if (Constants.METRICS_ENABLED) {
+            new MetricsServer(blockchain.getMiningMetrics(), Blockchain.unconfirmedTransactions).start();
+        }
         BlockchainCLI cli = new BlockchainCLI(blockchain, senderWallet, networkManager, forkResolution);
         cli.start();
     }
@@ -0,0 +1,27 @@
+package blockchain;
+
+import java.util.List;
+
+public class MerkleProof {
+    private final String transactionId;
+    private final String blockHash; // Block whose header commits to merkleRoot
+    private final String merkleRoot;
+    private final int index; // Leaf position, decides whether each sibling is hashed on the left or the right
+    private final List<String> siblings; // One hash per tree level, leaf to root
+
+    public MerkleProof(String transactionId, String blockHash, String merkleRoot, int index, List<String> siblings) {
+        this.transactionId = transactionId;
+        this.blockHash = blockHash;
+        this.merkleRoot = merkleRoot;
+        this.index = index;
+        this.siblings = siblings;
+    }
+
+    // Checks the proof against a root the caller trusts, i.e. taken from its own copy of the block, never the proof's own merkleRoot
+    public boolean verify(String trustedMerkleRoot) {return MerkleTree.verifyProof(this, trustedMerkleRoot);}
+    public String getTransactionId() {return transactionId;}
+    public String getBlockHash() {return blockHash;}
+    public String getMerkleRoot() {return merkleRoot;}
+    public int getIndex() {return index;}
+    public List<String> getSiblings() {return siblings;}
+}
@@ -0,0 +1,69 @@
+package blockchain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MerkleTree {
+    private final List<String> transactionIds;
+    private final List<List<Sha256Hash>> levels = new ArrayList<>(); // levels.get(0) are the leaves, the last level holds the root
+
+    // Every id must be a 64 digit hex hash (see Sha256Hash.isHex); admission and block validation reject any other
+    public MerkleTree(List<String> transactionIds) {
+        this.transactionIds = new ArrayList<>(transactionIds);
+        List<Sha256Hash> level = new ArrayList<>();
+        for (String transactionId : transactionIds) {
+            level.add(Sha256Hash.fromHex(transactionId));
+        }
+        if (level.isEmpty()) {
+            level.add(Sha256Hash.ZERO); // An empty block commits to an all-zero root
+        }
+        levels.add(level);
+        while (level.size() > 1) {
+            List<Sha256Hash> nextLevel = new ArrayList<>();
+            for (int i = 0; i < level.size(); i += 2) {
+                Sha256Hash left = level.get(i);
+                Sha256Hash right = (i + 1 < level.size()) ? level.get(i + 1) : left; // Duplicate the last hash on odd levels
+                nextLevel.add(Sha256Hash.combine(left, right));
+            }
+            levels.add(nextLevel);
+            level = nextLevel;
+        }
+    }
+
+    public Sha256Hash getRootHash() {return levels.get(levels.size() - 1).get(0);}
+    public String getRoot() {return getRootHash().toHex();}
+
+    // Returns the sibling hashes from the leaf up to the root, or null if the transaction is not in this tree
+    public MerkleProof getProof(String transactionId, String blockHash) {
+        int index = transactionIds.indexOf(transactionId);
+        if (index < 0) {
+            return null;
+        }
+        List<String> siblings = new ArrayList<>();
+        int position = index;
+        for (int i = 0; i < levels.size() - 1; i++) {
+            List<Sha256Hash> level = levels.get(i);
+            int siblingPosition = (position % 2 == 0) ? Math.min(position + 1, level.size() - 1) : position - 1;
+            siblings.add(level.get(siblingPosition).toHex());
+            position /= 2;
+        }
+        return new MerkleProof(transactionId, blockHash, getRoot(), index, siblings);
+    }
+
+    // Recomputes the root from the proof alone; the caller still has to trust the block header that carries the root.
+    // Proofs come from peers, so anything that isn't a well-formed hash makes the proof invalid rather than throwing.
+    public static boolean verifyProof(MerkleProof proof, String merkleRoot) {
+        if (!Sha256Hash.isHex(proof.getTransactionId()) || !Sha256Hash.isHex(merkleRoot) || proof.getSiblings() == null
+                || proof.getIndex() < 0 || !proof.getSiblings().stream().allMatch(Sha256Hash::isHex)) {
+            return false;
+        }
+        Sha256Hash current = Sha256Hash.fromHex(proof.getTransactionId());
+        int position = proof.getIndex();
+        for (String sibling : proof.getSiblings()) {
+            Sha256Hash siblingHash = Sha256Hash.fromHex(sibling);
+            current = (position % 2 == 0) ? Sha256Hash.combine(current, siblingHash) : Sha256Hash.combine(siblingHash, current);
+            position /= 2;
+        }
+        return current.equals(Sha256Hash.fromHex(merkleRoot));
+    }
+}
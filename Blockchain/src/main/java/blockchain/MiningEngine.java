@@ -0,0 +1,104 @@
+package blockchain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+public class MiningEngine {
+    public static final long NONCE_SPACE = 1L << 32; // The full unsigned range of the 32-bit nonce
+    private static final int NONCE_BATCH = 1024; // Nonces per kernel call; the stale condition is polled between batches
+    private final int threads;
+    private final ExecutorService workerPool;
+    private final MiningMetrics metrics;
+
+    public MiningEngine(int threads, MiningMetrics metrics) {
+        this.threads = Math.max(1, threads);
+        this.metrics = metrics;
+        AtomicInteger workerId = new AtomicInteger();
+        this.workerPool = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "mining-worker-" + workerId.getAndIncrement());
+            thread.setDaemon(true); // Mining workers must not keep the JVM alive
+            return thread;
+        });
+        System.out.println("Mining with " + this.threads + " threads, " + HashKernel.create().getName() + " SHA-256 kernel.");
+    }
+
+    // Splits the nonce space across the worker threads, rolling the timestamp whenever the whole space is exhausted.
+    // Returns false without a solution as soon as isStale reports that the block template is no longer worth mining.
+    public boolean mine(Block block, BooleanSupplier isStale) {
+        long timestamp = block.getTimestamp();
+        while (true) {
+            BlockHeader header = block.createHeader(timestamp);
+            long nonce = search(header.getBytes(), 0, NONCE_SPACE, isStale);
+            if (nonce >= 0) {
+                block.applySolution(timestamp, (int) nonce, StringUtil.bytesToHex(hashWithNonce(header, (int) nonce)));
+                System.out.println("Block mined! Hash: " + block.getHash());
+                return true;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            if (isStale.getAsBoolean()) {
+                System.out.println("Mining aborted: block template is stale.");
+                return false;
+            }
+            timestamp = Math.max(timestamp + 1, System.currentTimeMillis()); // Nonce space exhausted, roll the timestamp
+            System.out.println("Nonce space exhausted, rolling timestamp to " + timestamp);
+        }
+    }
+
+    // Searches nonces [from, to) of a serialized header in parallel. Returns the first winning nonce found,
+    // or -1 once the range is exhausted or isStale reports that the work is no longer wanted.
+    public long search(byte[] headerBytes, long from, long to, BooleanSupplier isStale) {
+        byte[] target = DifficultyTarget.toTargetBytes(new BlockHeader(headerBytes).getBits());
+        AtomicLong winner = new AtomicLong(-1);
+        AtomicBoolean stop = new AtomicBoolean(false); // Set by the winning worker or by the first worker that sees stale work
+        List<Callable<Void>> tasks = new ArrayList<>();
+        long chunk = (to - from) / threads;
+        for (int i = 0; i < threads; i++) {
+            long start = from + i * chunk;
+            long end = (i == threads - 1) ? to : start + chunk;
+            tasks.add(searchRange(headerBytes, start, end, target, winner, stop, isStale));
+        }
+        try {
+            workerPool.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Mining interrupted.");
+        }
+        return winner.get();
+    }
+
+    private Callable<Void> searchRange(byte[] headerBytes, long from, long to, byte[] target,
+                                       AtomicLong winner, AtomicBoolean stop, BooleanSupplier isStale) {
+        return () -> {
+            BlockHeader header = new BlockHeader(headerBytes); // Each worker patches its own header copy
+            HashKernel kernel = HashKernel.create();
+            for (long n = from; n < to && !stop.get(); n += NONCE_BATCH) {
+                if (isStale.getAsBoolean()) {
+                    stop.set(true);
+                    break;
+                }
+                int count = (int) Math.min(NONCE_BATCH, to - n);
+                long nonce = kernel.search(header, n, count, target);
+                metrics.recordHashes(count);
+                if (nonce >= 0 && winner.compareAndSet(-1, nonce)) {
+                    stop.set(true); // First worker to succeed stops the others
+                }
+            }
+            return null;
+        };
+    }
+
+    public static byte[] hashWithNonce(BlockHeader header, int nonce) {
+        byte[] hash = new byte[Sha256Hash.LENGTH];
+        header.hashWithNonce(nonce, hash);
+        return hash;
+    }
+
+    public int getThreads() {return threads;}
+}
@@ -0,0 +1,126 @@
+package blockchain;
+
+import ledger.LRUCache;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Counters and gauges describing how well mining is going, rendered in the Prometheus text format by MetricsServer
+public class MiningMetrics {
+    private static final long RATE_WINDOW_NANOS = 1_000_000_000L; // Hashrate is measured over roughly one second
+    private final Map<String, ThreadStats> threadStats = new ConcurrentHashMap<>(); // By mining thread name
+    private final ThreadLocal<ThreadStats> localStats = ThreadLocal.withInitial(this::registerThread);
+    private final Map<String, AtomicLong> blocksMined = new ConcurrentHashMap<>(); // By source: local or external
+    private final Map<String, Long> templateCreatedAt = new ConcurrentHashMap<>(); // Creation time of the template each source is mining
+    private final Set<String> minedHashes = Collections.synchronizedSet(Collections.newSetFromMap(new LRUCache<>(Constants.MAX_HASH_COUNT)));
+    private final AtomicLong templatesCreated = new AtomicLong();
+    private final AtomicLong templatesAbandoned = new AtomicLong();
+    private final AtomicLong staleBlocks = new AtomicLong();
+    private final AtomicLong orphanedBlocks = new AtomicLong();
+    private final AtomicLong timeToBlockCount = new AtomicLong();
+    private final AtomicLong timeToBlockMillis = new AtomicLong();
+    private volatile long lastTimeToBlockMillis = 0;
+
+    // Only ever written by its own mining thread, read by the metrics endpoint
+    private static class ThreadStats {
+        private volatile long hashes = 0;
+        private volatile double hashrate = 0;
+        private volatile long lastUpdate = System.nanoTime();
+        private long windowStart = System.nanoTime();
+        private long windowHashes = 0;
+    }
+
+    private ThreadStats registerThread() {
+        ThreadStats stats = new ThreadStats();
+        threadStats.put(Thread.currentThread().getName(), stats);
+        return stats;
+    }
+
+    // Called by the mining workers after every batch of nonces
+    public void recordHashes(long count) {
+        ThreadStats stats = localStats.get();
+        long now = System.nanoTime();
+        stats.hashes += count;
+        stats.windowHashes += count;
+        stats.lastUpdate = now;
+        if (now - stats.windowStart >= RATE_WINDOW_NANOS) {
+            stats.hashrate = stats.windowHashes * 1e9 / (now - stats.windowStart);
+            stats.windowStart = now;
+            stats.windowHashes = 0;
+        }
+    }
+
+    public void templateCreated(String source, long createdAt) {
+        templatesCreated.incrementAndGet();
+        templateCreatedAt.put(source, createdAt);
+    }
+
+    public void templateAbandoned(String source) {
+        templatesAbandoned.incrementAndGet();
+        templateCreatedAt.remove(source);
+    }
+
+    public void blockMined(String source, Block block, long templateCreated) {
+        long elapsed = System.currentTimeMillis() - templateCreated;
+        blocksMined.computeIfAbsent(source, k -> new AtomicLong()).incrementAndGet();
+        minedHashes.add(block.getHash());
+        templateCreatedAt.remove(source);
+        timeToBlockCount.incrementAndGet();
+        timeToBlockMillis.addAndGet(elapsed);
+        lastTimeToBlockMillis = elapsed;
+    }
+
+    // A block we mined did not make it onto our chain, e.g. a competing block for the same height arrived first
+    public void blockRejected(String hash) {
+        if (minedHashes.remove(hash)) {
+            staleBlocks.incrementAndGet();
+        }
+    }
+
+    // A block we mined was rolled back by a chain reorganization
+    public void blockDiscarded(String hash) {
+        if (minedHashes.remove(hash)) {
+            orphanedBlocks.incrementAndGet();
+        }
+    }
+
+    public double getHashrate() {
+        long now = System.nanoTime();
+        return threadStats.values().stream().mapToDouble(stats -> currentRate(stats, now)).sum();
+    }
+
+    // A thread that has not reported for a while is idle, not still hashing at its last rate
+    private static double currentRate(ThreadStats stats, long now) {
+        return now - stats.lastUpdate > 2 * RATE_WINDOW_NANOS ? 0 : stats.hashrate;
+    }
+
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        long now = System.nanoTime();
+        out.append("# HELP mining_hashes_total Nonces hashed per mining thread.\n# TYPE mining_hashes_total counter\n");
+        threadStats.forEach((thread, stats) -> out.append("mining_hashes_total{thread=\"").append(thread).append("\"} ").append(stats.hashes).append('\n'));
+        out.append("# HELP mining_hashrate Hashes per second per mining thread over the last second.\n# TYPE mining_hashrate gauge\n");
+        threadStats.forEach((thread, stats) -> out.append("mining_hashrate{thread=\"").append(thread).append("\"} ").append(currentRate(stats, now)).append('\n'));
+        out.append("# HELP mining_blocks_mined_total Blocks solved by this node, by who found the nonce.\n# TYPE mining_blocks_mined_total counter\n");
+        blocksMined.forEach((source, count) -> out.append("mining_blocks_mined_total{source=\"").append(source).append("\"} ").append(count.get()).append('\n'));
+        out.append("# HELP mining_time_to_block_seconds Time from template creation to solution.\n# TYPE mining_time_to_block_seconds summary\n");
+        out.append("mining_time_to_block_seconds_sum ").append(timeToBlockMillis.get() / 1000.0).append('\n');
+        out.append("mining_time_to_block_seconds_count ").append(timeToBlockCount.get()).append('\n');
+        out.append("# HELP mining_last_time_to_block_seconds Time to solve the most recent block.\n# TYPE mining_last_time_to_block_seconds gauge\n");
+        out.append("mining_last_time_to_block_seconds ").append(lastTimeToBlockMillis / 1000.0).append('\n');
+        out.append("# HELP mining_template_age_seconds Age of the block template currently being mined.\n# TYPE mining_template_age_seconds gauge\n");
+        long wallClock = System.currentTimeMillis();
+        templateCreatedAt.forEach((source, createdAt) -> out.append("mining_template_age_seconds{source=\"").append(source).append("\"} ").append((wallClock - createdAt) / 1000.0).append('\n'));
+        out.append("# HELP mining_templates_created_total Block templates built for mining.\n# TYPE mining_templates_created_total counter\n");
+        out.append("mining_templates_created_total ").append(templatesCreated.get()).append('\n');
+        out.append("# HELP mining_templates_abandoned_total Templates dropped unsolved because they went stale.\n# TYPE mining_templates_abandoned_total counter\n");
+        out.append("mining_templates_abandoned_total ").append(templatesAbandoned.get()).append('\n');
+        out.append("# HELP mining_stale_blocks_total Mined blocks that never made it onto our chain.\n# TYPE mining_stale_blocks_total counter\n");
+        out.append("mining_stale_blocks_total ").append(staleBlocks.get()).append('\n');
+        out.append("# HELP mining_orphaned_blocks_total Mined blocks later discarded by a chain reorganization.\n# TYPE mining_orphaned_blocks_total counter\n");
+        out.append("mining_orphaned_blocks_total ").append(orphanedBlocks.get()).append('\n');
+        return out.toString();
+    }
+}
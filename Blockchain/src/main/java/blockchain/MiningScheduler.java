@@ -0,0 +1,66 @@
+package blockchain;
+
+public class MiningScheduler implements Runnable {
+    private final Blockchain blockchain;
+    private final ForkResolution forkResolution;
+    private final MiningEngine miningEngine;
+    private volatile boolean newTransactions = false; // Set when the pool changed since the current template was built
+    private volatile boolean running = true;
+
+    public MiningScheduler(Blockchain blockchain, ForkResolution forkResolution, MiningEngine miningEngine) {
+        this.blockchain = blockchain;
+        this.forkResolution = forkResolution;
+        this.miningEngine = miningEngine;
+    }
+
+    // Mines continuously: each template is refreshed on a timer, when new transactions could still fit, or when the tip moves
+    @Override
+    public void run() {
+        while (running) {
+            if (blockchain.isSyncing()) {
+                sleep(Constants.TEMPLATE_REFRESH_MS / 10); // Don't mine on top of a chain we know is behind
+                continue;
+            }
+            newTransactions = false;
+            Block template = blockchain.createBlockTemplate();
+            long createdAt = System.currentTimeMillis();
+            MiningMetrics metrics = blockchain.getMiningMetrics();
+            metrics.templateCreated("local", createdAt);
+            boolean templateFull = template.getTransactions().size() - 1 < Blockchain.unconfirmedTransactions.size(); // Minus the coinbase
+            String parentHash = template.getPreviousHash();
+
+            boolean mined = miningEngine.mine(template, () -> !running
+                    || !parentHash.equals(blockchain.getTipHash())
+                    || System.currentTimeMillis() - createdAt > Constants.TEMPLATE_REFRESH_MS
+                    || (newTransactions && !templateFull));
+            if (mined) {
+                metrics.blockMined("local", template, createdAt);
+                blockchain.submitMinedBlock(template, forkResolution);
+                awaitTipChange(parentHash); // Consensus connects the block asynchronously, the next template must build on it
+            } else {
+                metrics.templateAbandoned("local");
+                blockchain.releaseTemplate(template);
+            }
+        }
+    }
+
+    public void notifyNewTransaction() {newTransactions = true;}
+    public void stop() {running = false;}
+
+    // Returns once the tip has moved off parentHash, or after TEMPLATE_REFRESH_MS if our block was rejected without a replacement
+    private void awaitTipChange(String parentHash) {
+        long deadline = System.currentTimeMillis() + Constants.TEMPLATE_REFRESH_MS;
+        while (running && parentHash.equals(blockchain.getTipHash()) && System.currentTimeMillis() < deadline) {
+            sleep(10); // Connecting a block takes milliseconds
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package blockchain;
+
+// One nonce at a time through the JCA digest on top of the header midstate
+public class ScalarHashKernel implements HashKernel {
+    private final byte[] hash = new byte[Sha256Hash.LENGTH]; // Reused for every attempt
+
+    @Override
+    public long search(BlockHeader header, long from, int count, byte[] target) {
+        for (long n = from; n < from + count; n++) {
+            header.hashWithNonce((int) n, hash);
+            if (DifficultyTarget.meetsTarget(hash, target)) {
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String getName() {return "scalar";}
+}
@@ -0,0 +1,65 @@
+package blockchain;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public final class Sha256Hash implements Comparable<Sha256Hash> {
+    public static final int LENGTH = 32;
+    public static final Sha256Hash ZERO = new Sha256Hash(new byte[LENGTH]);
+    private final byte[] bytes;
+    private final int hashCode; // Digest bytes are uniformly distributed, so the first four are a good hash code
+
+    private Sha256Hash(byte[] bytes) {
+        this.bytes = bytes;
+        this.hashCode = ((bytes[0] & 0xff) << 24) | ((bytes[1] & 0xff) << 16) | ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff);
+    }
+
+    // Takes ownership of the array, callers must not modify it afterwards
+    public static Sha256Hash wrap(byte[] bytes) {
+        if (bytes.length != LENGTH) {
+            throw new IllegalArgumentException("SHA-256 hash must be " + LENGTH + " bytes, got " + bytes.length);
+        }
+        return new Sha256Hash(bytes);
+    }
+
+    public static Sha256Hash of(byte[] data) {return new Sha256Hash(StringUtil.sha256(data));}
+    public static Sha256Hash of(ByteBuffer data) {return new Sha256Hash(StringUtil.sha256(data));}
+    public static Sha256Hash fromHex(String hex) {return wrap(StringUtil.hexToBytes(hex));}
+
+    // True for exactly 2 * LENGTH hex digits, the only input fromHex accepts; check untrusted strings before decoding them
+    public static boolean isHex(String hex) {
+        if (hex == null || hex.length() != 2 * LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < hex.length(); i++) {
+            if (Character.digit(hex.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Hash of the concatenation left || right, without building the concatenated array
+    public static Sha256Hash combine(Sha256Hash left, Sha256Hash right) {
+        return new Sha256Hash(StringUtil.sha256(left.bytes, right.bytes));
+    }
+
+    public boolean meetsTarget(int bits) {return DifficultyTarget.meetsTarget(bytes, DifficultyTarget.toTargetBytes(bits));}
+    public byte[] getBytes() {return bytes.clone();}
+    public String toHex() {return StringUtil.bytesToHex(bytes);}
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Sha256Hash)) return false;
+        Sha256Hash other = (Sha256Hash) o;
+        return hashCode == other.hashCode && Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {return hashCode;}
+    @Override
+    public int compareTo(Sha256Hash other) {return Arrays.compareUnsigned(bytes, other.bytes);}
+    @Override
+    public String toString() {return toHex();}
+}
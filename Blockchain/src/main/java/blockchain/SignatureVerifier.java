@@ -0,0 +1,102 @@
+package blockchain;
+
+import ledger.Transaction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Verifies the signatures of a block, or of a batch of blocks during sync, across all cores before the sequential
+// UTXO-connect step. Once one signature fails, the tasks that haven't started yet skip their crypto.
+public class SignatureVerifier {
+    private final ExecutorService verifierPool;
+
+    public SignatureVerifier(int threads) {
+        AtomicInteger workerId = new AtomicInteger();
+        this.verifierPool = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "sig-verifier-" + workerId.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean verifyAll(List<Transaction> transactions) {
+        if (transactions.size() < 2) {
+            return transactions.stream().allMatch(Transaction::verifySignature); // Not worth a hand-off
+        }
+        AtomicBoolean failed = new AtomicBoolean(false);
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            tasks.add(() -> verify(transaction, failed));
+        }
+        boolean[] results = runAll(tasks);
+        if (results == null) {
+            return false; // Interrupted, trust nothing
+        }
+        for (boolean valid : results) {
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns the index of the first block found with a bad signature, or -1 if every signature in the batch verified
+    public int findFirstInvalidBlock(List<Block> blocks) {
+        AtomicBoolean failed = new AtomicBoolean(false);
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        List<Integer> taskBlocks = new ArrayList<>(); // Block index of each task
+        for (int i = 0; i < blocks.size(); i++) {
+            for (Transaction transaction : blocks.get(i).getTransactions()) {
+                tasks.add(() -> verify(transaction, failed));
+                taskBlocks.add(i);
+            }
+        }
+        boolean[] results = runAll(tasks);
+        if (results == null) {
+            return 0; // Interrupted, trust nothing
+        }
+        for (int i = 0; i < results.length; i++) {
+            if (!results[i]) {
+                return taskBlocks.get(i); // Tasks are in block order, so the first failure is in the earliest bad block
+            }
+        }
+        return -1;
+    }
+
+    private static boolean verify(Transaction transaction, AtomicBoolean failed) {
+        if (failed.get()) {
+            return true; // Early abort: the batch is already rejected, don't spend crypto on it
+        }
+        if (!transaction.verifySignature()) {
+            failed.set(true);
+            return false;
+        }
+        return true;
+    }
+
+    // Whether each task returned true, a task that threw counting as a failure; null if interrupted
+    private boolean[] runAll(List<Callable<Boolean>> tasks) {
+        try {
+            List<Future<Boolean>> futures = verifierPool.invokeAll(tasks);
+            boolean[] results = new boolean[futures.size()];
+            for (int i = 0; i < results.length; i++) {
+                try {
+                    results[i] = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    System.err.println("Signature verification failed with an error: " + e.getCause());
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Signature verification interrupted.");
+            return null;
+        }
+    }
+}
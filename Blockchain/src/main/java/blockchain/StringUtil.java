@@ -1,17 +1,48 @@
 package blockchain;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.MessageDigest;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
 import java.security.Signature;
+import ledger.ConcurrentLRUCache;
 
 public class StringUtil {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    // One reusable SHA-256 engine per thread instead of a provider lookup on every call
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    });
+
+    // Likewise one ECDSA engine and key factory per thread; initSign/initVerify fully reset a Signature between uses
+    private static final ThreadLocal<Signature> ECDSA = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance("ECDSA", "BC");
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    });
+    private static final ThreadLocal<KeyFactory> KEY_FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return KeyFactory.getInstance("ECDSA", "BC");
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    });
+    // Decoded public keys by address string; the same few senders sign most transactions
+    private static final ConcurrentLRUCache<String, PublicKey> PUBLIC_KEYS = new ConcurrentLRUCache<>(Constants.PUBLIC_KEY_CACHE_SIZE);
+
     // Applies ECDSA Signature and returns the result (as bytes).
     public static byte[] applyECDSASig(PrivateKey privateKey, String input) {
         Signature dsa;
         byte[] output;
         try {
-            dsa = Signature.getInstance("ECDSA", "BC");
+            dsa = ECDSA.get();
             dsa.initSign(privateKey);
             byte[] strByte = input.getBytes();
             dsa.update(strByte);
@@ -25,7 +56,7 @@ public class StringUtil {
     // Verifies a String signature
     public static boolean verifyECDSASig(PublicKey publicKey, String data, byte[] signature) {
         try {
-            Signature ecdsaVerify = Signature.getInstance("ECDSA", "BC");
+            Signature ecdsaVerify = ECDSA.get();
             ecdsaVerify.initVerify(publicKey);
             ecdsaVerify.update(data.getBytes());
             return ecdsaVerify.verify(signature);
@@ -34,43 +65,72 @@ public class StringUtil {
         }
     }
 
-    // Returns difficulty string target, to compare to hash. e.g. difficulty of 5 will return "00000"
-    public static String getDifficultyString(int difficulty) {
-        return new String(new char[difficulty]).replace('\0', '0');
-    }
-
     // Applies SHA256 to a string and returns a hash.
     public static String applySha256(String input) {
+        return bytesToHex(sha256(input.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Applies SHA256 to raw bytes and returns the raw 32-byte digest.
+    public static byte[] sha256(byte[] input) {
+        return SHA256.get().digest(input); // digest() also resets the engine for the next call
+    }
+
+    public static byte[] sha256(ByteBuffer input) {
+        MessageDigest digest = SHA256.get();
+        digest.update(input);
+        return digest.digest();
+    }
+
+    public static byte[] sha256(byte[] first, byte[] second) {
+        MessageDigest digest = SHA256.get();
+        digest.update(first);
+        digest.update(second);
+        return digest.digest();
+    }
+
+    // Returns a fresh SHA-256 engine, e.g. to hold a midstate that is cloned per attempt
+    public static MessageDigest newSha256Digest() {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            // Applies sha256 to our input,
-            byte[] hash = digest.digest(input.getBytes("UTF-8"));
-            StringBuilder hexString = new StringBuilder(); // This will contain hash as hexadecimal
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (Exception e) {
+            return (MessageDigest) SHA256.get().clone();
+        } catch (CloneNotSupportedException e) {
             throw new RuntimeException(e);
         }
     }
 
+    public static String bytesToHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(hex);
+    }
+
+    public static byte[] hexToBytes(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((Character.digit(hex.charAt(i * 2), 16) << 4) | Character.digit(hex.charAt(i * 2 + 1), 16));
+        }
+        return bytes;
+    }
+
     // Gets the encoded string from any key.
     public static String getStringFromKey(Key key) {
         return Base64.getEncoder().encodeToString(key.getEncoded());
     }
 
-    public synchronized static PublicKey getKeyFromString(String key) {
+    public static PublicKey getKeyFromString(String key) {
+        return PUBLIC_KEYS.computeIfAbsent(key, StringUtil::decodePublicKey);
+    }
+
+    private static PublicKey decodePublicKey(String key) {
         try {
             // Replace any Unicode escape sequences for '='
             String filteredKey = key.replace("\\u003d", "=");
             // Continue with the decoding and key generation process
             byte[] keyBytes = Base64.getDecoder().decode(filteredKey);
             X509EncodedKeySpec spec = new X509EncodedKeySpec(keyBytes);
-            KeyFactory keyFactory = KeyFactory.getInstance("ECDSA", "BC");
-            return keyFactory.generatePublic(spec);
+            return KEY_FACTORY.get().generatePublic(spec);
         } catch (Exception e) {
             throw new RuntimeException("Error while converting string to public key", e);
         }
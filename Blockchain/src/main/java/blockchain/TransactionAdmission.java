@@ -0,0 +1,62 @@
+package blockchain;
+
+import ledger.Transaction;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Admits transactions in stages. Decoding already happens on each peer's own connection thread; the stateless checks
+// (format, signature) run here on a pool sized to the cores, and only the short stateful step (UTXO lookups, conflict
+// check, insert) is serialized on the mempool, so admission throughput scales with cores instead of one monitor.
+public class TransactionAdmission {
+    private final Blockchain blockchain;
+    private final ExecutorService verifierPool;
+
+    public TransactionAdmission(Blockchain blockchain, int threads) {
+        this.blockchain = blockchain;
+        AtomicInteger workerId = new AtomicInteger();
+        this.verifierPool = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "tx-verifier-" + workerId.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Completes with true once the transaction is in the pool and relayed to everyone but peerIp (null for local ones)
+    public CompletableFuture<Boolean> submit(Transaction transaction, String peerIp) {
+        return CompletableFuture.supplyAsync(() -> checkStateless(transaction), verifierPool)
+                .thenApply(valid -> valid && blockchain.acceptTransaction(transaction, peerIp));
+    }
+
+    // Verifies the whole batch in parallel, then admits the survivors in their original order. Completes with the number accepted.
+    public CompletableFuture<Integer> submitBatch(List<Transaction> transactions, String peerIp) {
+        List<CompletableFuture<Boolean>> checks = transactions.stream()
+                .map(transaction -> CompletableFuture.supplyAsync(() -> checkStateless(transaction), verifierPool))
+                .toList();
+        return CompletableFuture.allOf(checks.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            int accepted = 0;
+            for (int i = 0; i < transactions.size(); i++) {
+                if (checks.get(i).join() && blockchain.acceptTransaction(transactions.get(i), peerIp)) {
+                    accepted++;
+                }
+            }
+            return accepted;
+        });
+    }
+
+    // Everything that doesn't depend on chain or pool state. A verified signature is remembered on the transaction,
+    // so the stateful step doesn't pay for it again.
+    private boolean checkStateless(Transaction transaction) {
+        if (!transaction.hasValidFormat()) {
+            System.out.println("Rejecting malformed transaction: " + transaction.transactionId);
+            return false;
+        }
+        if (transaction.value != 0 && !transaction.verifySignature()) {
+            System.out.println("Rejecting transaction with an invalid signature: " + transaction.transactionId);
+            return false;
+        }
+        return true;
+    }
+}
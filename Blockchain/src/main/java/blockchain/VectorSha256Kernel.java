@@ -0,0 +1,198 @@
+package blockchain;
+
+import java.nio.ByteBuffer;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Multi-buffer SHA-256: every SIMD lane hashes the second header block for a different nonce (4/8/16 lanes on SSE/AVX2/AVX-512).
+// Only loaded when jdk.incubator.vector is resolved, see HashKernel.create().
+public class VectorSha256Kernel implements HashKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final int NONCE_WORD = 4; // The nonce is word 4 of the second 64-byte block (header bytes 80..83)
+    private static final int[] IV = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19};
+    private static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2};
+
+    private BlockHeader preparedHeader;
+    private final int[] midstate = new int[8]; // State after the constant first block
+    private final int[] roundState = new int[8]; // State after rounds 0..3, which only read header words shared by all lanes
+    private final int[] schedule = new int[64 * LANES]; // Message schedule, one vector of LANES words per round
+    private final int[] hashWords = new int[8 * LANES]; // Final state words per lane
+    private final int[] laneOffsets = new int[LANES];
+    private final byte[] candidateHash = new byte[Sha256Hash.LENGTH];
+
+    public VectorSha256Kernel() {
+        for (int i = 0; i < LANES; i++) {
+            laneOffsets[i] = i;
+        }
+    }
+
+    @Override
+    public long search(BlockHeader header, long from, int count, byte[] target) {
+        prepare(header);
+        long end = from + count;
+        int targetWord = ByteBuffer.wrap(target).getInt() ^ Integer.MIN_VALUE; // Bias for an unsigned comparison
+        for (long base = from; base < end; base += LANES) {
+            compressLanes((int) base);
+            for (int lane = 0; lane < LANES && base + lane < end; lane++) {
+                // The first hash word must not exceed the first target word; confirm candidates with the scalar digest
+                if ((hashWords[lane] ^ Integer.MIN_VALUE) <= targetWord) {
+                    header.hashWithNonce((int) (base + lane), candidateHash);
+                    if (DifficultyTarget.meetsTarget(candidateHash, target)) {
+                        return base + lane;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Hashes LANES consecutive nonces starting at baseNonce, leaving the state words in hashWords[word * LANES + lane]
+    private void compressLanes(int baseNonce) {
+        IntVector.broadcast(SPECIES, baseNonce).add(IntVector.fromArray(SPECIES, laneOffsets, 0))
+                .intoArray(schedule, NONCE_WORD * LANES);
+        for (int t = 16; t < 64; t++) {
+            IntVector w2 = IntVector.fromArray(SPECIES, schedule, (t - 2) * LANES);
+            IntVector w15 = IntVector.fromArray(SPECIES, schedule, (t - 15) * LANES);
+            IntVector s1 = w2.lanewise(VectorOperators.ROR, 17).lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.ROR, 19))
+                    .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.LSHR, 10));
+            IntVector s0 = w15.lanewise(VectorOperators.ROR, 7).lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.ROR, 18))
+                    .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.LSHR, 3));
+            s1.add(IntVector.fromArray(SPECIES, schedule, (t - 7) * LANES))
+                    .add(s0)
+                    .add(IntVector.fromArray(SPECIES, schedule, (t - 16) * LANES))
+                    .intoArray(schedule, t * LANES);
+        }
+
+        IntVector a = IntVector.broadcast(SPECIES, roundState[0]);
+        IntVector b = IntVector.broadcast(SPECIES, roundState[1]);
+        IntVector c = IntVector.broadcast(SPECIES, roundState[2]);
+        IntVector d = IntVector.broadcast(SPECIES, roundState[3]);
+        IntVector e = IntVector.broadcast(SPECIES, roundState[4]);
+        IntVector f = IntVector.broadcast(SPECIES, roundState[5]);
+        IntVector g = IntVector.broadcast(SPECIES, roundState[6]);
+        IntVector h = IntVector.broadcast(SPECIES, roundState[7]);
+        for (int t = NONCE_WORD; t < 64; t++) {
+            IntVector sigma1 = e.lanewise(VectorOperators.ROR, 6).lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 11))
+                    .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 25));
+            IntVector choose = g.lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.AND, f.lanewise(VectorOperators.XOR, g)));
+            IntVector t1 = h.add(sigma1).add(choose).add(K[t]).add(IntVector.fromArray(SPECIES, schedule, t * LANES));
+            IntVector sigma0 = a.lanewise(VectorOperators.ROR, 2).lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 13))
+                    .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 22));
+            IntVector majority = a.lanewise(VectorOperators.AND, b)
+                    .lanewise(VectorOperators.OR, c.lanewise(VectorOperators.AND, a.lanewise(VectorOperators.OR, b)));
+            h = g;
+            g = f;
+            f = e;
+            e = d.add(t1);
+            d = c;
+            c = b;
+            b = a;
+            a = t1.add(sigma0).add(majority);
+        }
+        a.add(midstate[0]).intoArray(hashWords, 0);
+        b.add(midstate[1]).intoArray(hashWords, LANES);
+        c.add(midstate[2]).intoArray(hashWords, 2 * LANES);
+        d.add(midstate[3]).intoArray(hashWords, 3 * LANES);
+        e.add(midstate[4]).intoArray(hashWords, 4 * LANES);
+        f.add(midstate[5]).intoArray(hashWords, 5 * LANES);
+        g.add(midstate[6]).intoArray(hashWords, 6 * LANES);
+        h.add(midstate[7]).intoArray(hashWords, 7 * LANES);
+    }
+
+    // Computes everything that is shared by all nonces of a header: the midstate, the padded tail and rounds 0..3
+    private void prepare(BlockHeader header) {
+        if (header == preparedHeader) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(header.getBytes());
+        int[] block = new int[16];
+        for (int i = 0; i < 16; i++) {
+            block[i] = bytes.getInt(i * 4);
+        }
+        System.arraycopy(IV, 0, midstate, 0, 8);
+        compressScalar(midstate, block);
+
+        int[] tail = new int[16];
+        for (int i = 0; i < 5; i++) {
+            tail[i] = bytes.getInt(64 + i * 4);
+        }
+        tail[5] = 0x80000000; // Padding bit right after the 84-byte message
+        tail[15] = BlockHeader.SIZE * 8; // Message length in bits
+        for (int t = 0; t < 16; t++) {
+            for (int lane = 0; lane < LANES; lane++) {
+                schedule[t * LANES + lane] = tail[t];
+            }
+        }
+        System.arraycopy(midstate, 0, roundState, 0, 8);
+        for (int t = 0; t < NONCE_WORD; t++) {
+            round(roundState, t, tail[t]);
+        }
+        preparedHeader = header;
+    }
+
+    private static void compressScalar(int[] state, int[] block) {
+        int[] w = new int[64];
+        System.arraycopy(block, 0, w, 0, 16);
+        for (int t = 16; t < 64; t++) {
+            int s0 = Integer.rotateRight(w[t - 15], 7) ^ Integer.rotateRight(w[t - 15], 18) ^ (w[t - 15] >>> 3);
+            int s1 = Integer.rotateRight(w[t - 2], 17) ^ Integer.rotateRight(w[t - 2], 19) ^ (w[t - 2] >>> 10);
+            w[t] = s1 + w[t - 7] + s0 + w[t - 16];
+        }
+        int[] working = state.clone();
+        for (int t = 0; t < 64; t++) {
+            round(working, t, w[t]);
+        }
+        for (int i = 0; i < 8; i++) {
+            state[i] += working[i];
+        }
+    }
+
+    private static void round(int[] s, int t, int w) {
+        int sigma1 = Integer.rotateRight(s[4], 6) ^ Integer.rotateRight(s[4], 11) ^ Integer.rotateRight(s[4], 25);
+        int choose = s[6] ^ (s[4] & (s[5] ^ s[6]));
+        int t1 = s[7] + sigma1 + choose + K[t] + w;
+        int sigma0 = Integer.rotateRight(s[0], 2) ^ Integer.rotateRight(s[0], 13) ^ Integer.rotateRight(s[0], 22);
+        int majority = (s[0] & s[1]) | (s[2] & (s[0] | s[1]));
+        System.arraycopy(s, 0, s, 1, 7); // h = g, g = f, ..., b = a
+        s[4] += t1; // e = d + t1 (d has just moved into slot 4)
+        s[0] = t1 + sigma0 + majority;
+    }
+
+    // Compares every lane against the JCA digest for a few headers and nonce ranges, including the 32-bit wrap-around
+    @Override
+    public boolean selfTest() {
+        byte[] expected = new byte[Sha256Hash.LENGTH];
+        long[] starts = {0, 123_456_789L, (1L << 32) - LANES};
+        for (int i = 0; i < starts.length; i++) {
+            BlockHeader header = new BlockHeader(Constants.BLOCK_VERSION, StringUtil.applySha256("prev" + i),
+                    StringUtil.applySha256("merkle" + i), System.currentTimeMillis() + i, Constants.INITIAL_DIFFICULTY_BITS, 0);
+            prepare(header);
+            compressLanes((int) starts[i]);
+            for (int lane = 0; lane < LANES; lane++) {
+                header.hashWithNonce((int) (starts[i] + lane), expected);
+                ByteBuffer expectedWords = ByteBuffer.wrap(expected);
+                for (int word = 0; word < 8; word++) {
+                    if (hashWords[word * LANES + lane] != expectedWords.getInt(word * 4)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        preparedHeader = null;
+        return true;
+    }
+
+    @Override
+    public String getName() {return "vector (" + LANES + " lanes)";}
+}
@@ -0,0 +1,57 @@
+package ledger;
+
+import java.util.function.Function;
+
+// Thread-safe bounded LRU map built from independently locked LRUCache stripes, so readers on different keys rarely
+// contend. Recency is tracked per stripe, which approximates a global LRU closely enough for caching.
+public class ConcurrentLRUCache<K, V> {
+    private static final int STRIPES = 16;
+    private final LRUCache<K, V>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentLRUCache(int capacity) {
+        stripes = (LRUCache<K, V>[]) new LRUCache<?, ?>[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LRUCache<>(Math.max(1, capacity / STRIPES));
+        }
+    }
+
+    public V get(K key) {
+        LRUCache<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.get(key); // Also marks the entry as recently used
+        }
+    }
+
+    public void put(K key, V value) {
+        LRUCache<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+    }
+
+    // The value is computed outside the stripe lock, so a slow computation never blocks other keys; two threads
+    // missing on the same key at once may both compute it, and the last one wins
+    public V computeIfAbsent(K key, Function<K, V> compute) {
+        V value = get(key);
+        if (value == null) {
+            value = compute.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    public int size() {
+        int size = 0;
+        for (LRUCache<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private LRUCache<K, V> stripeFor(K key) {
+        return stripes[Math.floorMod(key.hashCode(), STRIPES)];
+    }
+}
@@ -0,0 +1,226 @@
+package ledger;
+
+import blockchain.Constants;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+// Pool of unconfirmed transactions, kept sorted by fee rate for block assembly, with an index from each spent output
+// to the pending transaction spending it so double-spend checks cost O(inputs) instead of a scan over the whole pool.
+// The pool is bounded by an estimate of the heap its entries retain: when full, the worst paying transactions are
+// evicted and the minimum admission fee rate rises above theirs, decaying again once the pressure is gone.
+public class Mempool {
+    private static final int MAX_CONSECUTIVE_MISSES = 1000;
+    private final Map<String, Entry> entries = new HashMap<>(); // By transactionId, guarded by this
+    private final NavigableSet<Entry> byFeeRate = new TreeSet<>(Entry.PRIORITY); // Best paying first, guarded by this
+    private final NavigableSet<Entry> byArrival = new TreeSet<>(Entry.ARRIVAL); // Oldest first, for expiry, guarded by this
+    private final Map<String, Transaction> spentOutpoints = new ConcurrentHashMap<>(); // transactionOutputId -> pending spender
+    private final long maxBytes;
+    private long usageBytes = 0; // Estimated heap retained by the pooled transactions and their index entries
+    private long sequence = 0; // Arrival counter, breaks fee rate ties in favour of older transactions
+    private double minFeeRate = 0; // Rolling admission floor, raised by evictions
+    private long minFeeRateUpdated = System.currentTimeMillis();
+    private long evictedCount = 0;
+
+    private static class Entry {
+        private static final Comparator<Entry> PRIORITY = Comparator.comparingDouble((Entry entry) -> entry.feeRate).reversed()
+                .thenComparingLong(entry -> entry.sequence);
+        private static final Comparator<Entry> ARRIVAL = Comparator.comparingLong(entry -> entry.sequence);
+        private final Transaction transaction;
+        private final double feeRate;
+        private final long sequence;
+        private final long addedAt;
+        private final long retainedBytes;
+
+        private Entry(Transaction transaction, long sequence) {
+            this.transaction = transaction;
+            this.feeRate = transaction.getFeeRate();
+            this.sequence = sequence;
+            this.addedAt = System.currentTimeMillis();
+            this.retainedBytes = estimateRetainedSize(transaction);
+        }
+    }
+
+    public Mempool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // Adds the transaction unless it is already pooled, pays less than the current minimum fee rate, or one of its inputs
+    // is already spent by another pending transaction. A transaction that is evicted again right away is not accepted.
+    public synchronized boolean add(Transaction transaction) {
+        if (entries.containsKey(transaction.transactionId)) {
+            System.out.println("Transaction already in the pool: " + transaction.transactionId);
+            return false;
+        }
+        if (hasConflict(transaction)) {
+            System.out.println("Transaction spends an output that a pending transaction already spends: " + transaction.transactionId);
+            return false;
+        }
+        if (transaction.getFeeRate() < getMinFeeRate()) {
+            System.out.println("Transaction fee rate " + transaction.getFeeRate() + " is below the pool minimum " + minFeeRate);
+            return false;
+        }
+        Entry entry = new Entry(transaction, sequence++);
+        entries.put(transaction.transactionId, entry);
+        byFeeRate.add(entry);
+        byArrival.add(entry);
+        usageBytes += entry.retainedBytes;
+        for (TransactionInput input : transaction.inputs) {
+            spentOutpoints.put(input.transactionOutputId, transaction);
+        }
+        expireOld();
+        trimToSize();
+        return entries.containsKey(transaction.transactionId);
+    }
+
+    // Evict the worst paying transactions until the pool fits its budget again, and stop admitting anything that pays less
+    private void trimToSize() {
+        while (usageBytes > maxBytes && !byFeeRate.isEmpty()) {
+            Entry worst = byFeeRate.last();
+            remove(worst.transaction);
+            evictedCount++;
+            minFeeRate = Math.max(minFeeRate, worst.feeRate + Constants.MEMPOOL_MIN_FEE_RATE_INCREMENT);
+            minFeeRateUpdated = System.currentTimeMillis();
+            System.out.println("Mempool full, evicted " + worst.transaction.transactionId + ". Minimum fee rate is now " + minFeeRate);
+        }
+    }
+
+    private void expireOld() {
+        long cutoff = System.currentTimeMillis() - Constants.MEMPOOL_EXPIRY_MS;
+        while (!byArrival.isEmpty() && byArrival.first().addedAt < cutoff) {
+            Entry oldest = byArrival.first();
+            System.out.println("Expiring transaction that stayed unconfirmed too long: " + oldest.transaction.transactionId);
+            remove(oldest.transaction);
+        }
+    }
+
+    // The floor halves every MEMPOOL_MIN_FEE_HALF_LIFE_MS while the pool is less than half full, and then drops back to zero
+    public synchronized double getMinFeeRate() {
+        long now = System.currentTimeMillis();
+        if (minFeeRate > 0 && usageBytes < maxBytes / 2 && now - minFeeRateUpdated > Constants.MEMPOOL_MIN_FEE_HALF_LIFE_MS) {
+            minFeeRate /= Math.pow(2, (double) (now - minFeeRateUpdated) / Constants.MEMPOOL_MIN_FEE_HALF_LIFE_MS);
+            minFeeRateUpdated = now;
+            if (minFeeRate < Constants.MEMPOOL_MIN_FEE_RATE_INCREMENT / 2) {
+                minFeeRate = 0;
+            }
+        }
+        return minFeeRate;
+    }
+
+    public synchronized boolean remove(Transaction transaction) {
+        Entry removed = entries.remove(transaction.transactionId);
+        if (removed == null) {
+            return false;
+        }
+        byFeeRate.remove(removed);
+        byArrival.remove(removed);
+        usageBytes -= removed.retainedBytes;
+        for (TransactionInput input : removed.transaction.inputs) {
+            spentOutpoints.remove(input.transactionOutputId, removed.transaction);
+        }
+        return true;
+    }
+
+    // Drops the transactions a newly connected block confirmed, along with any pending transaction that spends
+    // one of the same outputs, since that one can never confirm now
+    public synchronized void removeConfirmed(List<Transaction> blockTransactions) {
+        expireOld();
+        for (Transaction confirmed : blockTransactions) {
+            remove(confirmed);
+            for (TransactionInput input : confirmed.inputs) {
+                Transaction conflicting = spentOutpoints.get(input.transactionOutputId);
+                if (conflicting != null) {
+                    System.out.println("Dropping pending transaction " + conflicting.transactionId + " that conflicts with a confirmed one.");
+                    remove(conflicting);
+                }
+            }
+        }
+    }
+
+    // Full sweep, only needed after a reorganization may have removed the outputs pending transactions spend
+    public synchronized void removeIf(Predicate<Transaction> filter) {
+        for (Entry entry : new ArrayList<>(byFeeRate)) {
+            if (filter.test(entry.transaction)) {
+                remove(entry.transaction);
+            }
+        }
+    }
+
+    // Greedy block assembly: walk the pool from the highest fee rate down and take everything that still fits.
+    // Inputs must be confirmed outputs, so a pending transaction never depends on another one and each is its own package.
+    public synchronized List<Transaction> selectForBlock(int maxBytes) {
+        List<Transaction> selected = new ArrayList<>();
+        int remaining = maxBytes;
+        int misses = 0;
+        for (Entry entry : byFeeRate) {
+            int size = entry.transaction.getSize();
+            if (size <= remaining) {
+                selected.add(entry.transaction);
+                remaining -= size;
+                misses = 0;
+            } else if (++misses >= MAX_CONSECUTIVE_MISSES) {
+                break; // The block is practically full, don't walk the rest of a large pool for scraps
+            }
+        }
+        return selected;
+    }
+
+    public boolean hasConflict(Transaction transaction) {
+        for (TransactionInput input : transaction.inputs) {
+            Transaction spender = spentOutpoints.get(input.transactionOutputId);
+            if (spender != null && spender != transaction) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Shallow sizes assume a 64-bit JVM with compressed oops: 12-byte object headers, 4-byte references, 8-byte alignment.
+    // The input UTXO links point into the UTXO set and are not counted, since evicting the transaction doesn't free them.
+    static long estimateRetainedSize(Transaction transaction) {
+        long size = align(12 + 7 * 4 + 3 * 4) // Transaction: references, value, fee, cached size
+                + stringSize(transaction.transactionId) + stringSize(transaction.sender) + stringSize(transaction.recipient)
+                + (transaction.signature == null ? 0 : align(16 + transaction.signature.length))
+                + listSize(transaction.inputs) + listSize(transaction.outputs);
+        for (TransactionInput input : transaction.inputs) {
+            size += align(12 + 2 * 4) + stringSize(input.transactionOutputId)
+                    + align(12 + 4 * 3) + 8; // Index entry in spentOutpoints plus its share of the table
+        }
+        for (TransactionOutput output : transaction.outputs) {
+            size += align(12 + 3 * 4 + 4 + 4) + stringSize(output.id) + stringSize(output.recipient) + stringSize(output.parentTransactionId);
+        }
+        return size + align(12 + 4 + 8 * 4) // Entry
+                + align(12 + 4 * 3) + 8 // entries map node plus its share of the table
+                + 2 * align(12 + 4 * 5 + 1); // byFeeRate and byArrival tree nodes
+    }
+
+    private static long stringSize(String value) {
+        return value == null ? 0 : align(12 + 4 + 4 + 1 + 1) + align(16 + value.length()); // String plus its Latin-1 byte[]
+    }
+
+    private static long listSize(List<?> list) {
+        return list == null ? 0 : align(12 + 4 + 4) + align(16 + 4L * Math.max(list.size(), 10)); // ArrayList plus its backing array
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    public synchronized long getUsageBytes() {return usageBytes;}
+    public long getMaxBytes() {return maxBytes;}
+    public synchronized long getEvictedCount() {return evictedCount;}
+    public Transaction getSpender(String transactionOutputId) {return spentOutpoints.get(transactionOutputId);}
+    public synchronized boolean contains(String transactionId) {return entries.containsKey(transactionId);}
+    public synchronized int size() {return entries.size();}
+    public synchronized List<Transaction> getTransactions() { // Snapshot, best fee rate first
+        List<Transaction> transactions = new ArrayList<>(byFeeRate.size());
+        byFeeRate.forEach(entry -> transactions.add(entry.transaction));
+        return transactions;
+    }
+}
@@ -0,0 +1,81 @@
+package ledger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Dumps the pending transactions to a gzipped JSON file so a restarted node doesn't start from an empty pool
+public class MempoolStore {
+    private final Mempool mempool;
+    private final Path file;
+    private final Gson gson = new Gson();
+    private List<Transaction> saved; // Read at startup; revalidating them has to wait until the chain has synced
+
+    public MempoolStore(Mempool mempool, String fileName) {
+        this.mempool = mempool;
+        this.file = Paths.get(fileName);
+        this.saved = load();
+    }
+
+    // Writes to a temporary file first so a crash mid-write never leaves a truncated dump behind. Saved transactions
+    // that haven't been handed out for revalidation yet are written again, so an early save or shutdown keeps them.
+    public synchronized void save() {
+        List<Transaction> transactions = mempool.getTransactions();
+        transactions.addAll(saved);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(temporary)), StandardCharsets.UTF_8)) {
+            gson.toJson(transactions, writer);
+        } catch (IOException e) {
+            System.err.println("Error saving mempool: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("Saved " + transactions.size() + " pending transactions to " + file);
+        } catch (IOException e) {
+            System.err.println("Error saving mempool: " + e.getMessage());
+        }
+    }
+
+    // Hands out the loaded dump once; later calls return nothing since those transactions are in the pool (or were rejected) by then
+    public synchronized List<Transaction> takeSavedTransactions() {
+        List<Transaction> transactions = saved;
+        saved = new ArrayList<>();
+        return transactions;
+    }
+
+    private List<Transaction> load() {
+        if (!Files.exists(file)) {
+            return new ArrayList<>();
+        }
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8)) {
+            List<Transaction> transactions = gson.fromJson(reader, new TypeToken<List<Transaction>>() {}.getType());
+            System.out.println("Loaded " + (transactions == null ? 0 : transactions.size()) + " pending transactions from " + file);
+            return transactions == null ? new ArrayList<>() : transactions;
+        } catch (IOException | JsonParseException e) {
+            System.err.println("Error loading mempool, starting with an empty pool: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    // Saves every intervalMs and once more when the JVM shuts down
+    public void startAutoSave(long intervalMs) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mempool-saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::save, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::save, "mempool-saver-shutdown"));
+    }
+}
@@ -0,0 +1,101 @@
+package ledger;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+// Holds transactions that spend outputs we can't spend yet (unknown, or not mature), keyed by those outputs,
+// so they can be retried once a block makes them spendable instead of being dropped on first sight
+public class OrphanPool {
+    private final Map<String, Orphan> orphans = new LinkedHashMap<>(); // By transactionId, oldest first, guarded by this
+    private final Map<String, Set<String>> byMissingOutpoint = new HashMap<>(); // transactionOutputId -> waiting transactionIds
+    private final int maxOrphans;
+    private final long ttlMs;
+
+    private static class Orphan {
+        private final Transaction transaction;
+        private final List<String> missingOutpoints;
+        private final long addedAt = System.currentTimeMillis();
+
+        private Orphan(Transaction transaction, List<String> missingOutpoints) {
+            this.transaction = transaction;
+            this.missingOutpoints = missingOutpoints;
+        }
+    }
+
+    public OrphanPool(int maxOrphans, long ttlMs) {
+        this.maxOrphans = maxOrphans;
+        this.ttlMs = ttlMs;
+    }
+
+    public synchronized boolean add(Transaction transaction, List<String> missingOutpoints) {
+        if (missingOutpoints.isEmpty() || orphans.containsKey(transaction.transactionId)) {
+            return false;
+        }
+        expire();
+        if (orphans.size() >= maxOrphans) {
+            remove(orphans.keySet().iterator().next()); // Make room by dropping the oldest
+        }
+        orphans.put(transaction.transactionId, new Orphan(transaction, missingOutpoints));
+        for (String outpoint : missingOutpoints) {
+            byMissingOutpoint.computeIfAbsent(outpoint, k -> new HashSet<>()).add(transaction.transactionId);
+        }
+        System.out.println("Holding orphan transaction " + transaction.transactionId + " until " + missingOutpoints.size() + " input(s) become spendable.");
+        return true;
+    }
+
+    // Removes and returns the orphans whose missing outputs are all spendable now. Only the outputs orphans wait on are
+    // checked, so the cost depends on the orphan pool, not on the size of the UTXO set.
+    public synchronized List<Transaction> takeReady(Predicate<String> isSpendable) {
+        expire();
+        Set<String> candidates = new LinkedHashSet<>();
+        for (Map.Entry<String, Set<String>> waiting : byMissingOutpoint.entrySet()) {
+            if (isSpendable.test(waiting.getKey())) {
+                candidates.addAll(waiting.getValue());
+            }
+        }
+        List<Transaction> ready = new ArrayList<>();
+        for (String transactionId : candidates) {
+            Orphan orphan = orphans.get(transactionId);
+            if (orphan != null && orphan.missingOutpoints.stream().allMatch(isSpendable)) {
+                remove(transactionId);
+                ready.add(orphan.transaction);
+            }
+        }
+        return ready;
+    }
+
+    private void expire() {
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        Iterator<Orphan> oldestFirst = orphans.values().iterator();
+        while (oldestFirst.hasNext()) {
+            Orphan orphan = oldestFirst.next();
+            if (orphan.addedAt >= cutoff) {
+                break;
+            }
+            System.out.println("Orphan transaction expired: " + orphan.transaction.transactionId);
+            unindex(orphan);
+            oldestFirst.remove();
+        }
+    }
+
+    private void remove(String transactionId) {
+        Orphan orphan = orphans.remove(transactionId);
+        if (orphan != null) {
+            unindex(orphan);
+        }
+    }
+
+    private void unindex(Orphan orphan) {
+        for (String outpoint : orphan.missingOutpoints) {
+            Set<String> waiting = byMissingOutpoint.get(outpoint);
+            if (waiting != null) {
+                waiting.remove(orphan.transaction.transactionId);
+                if (waiting.isEmpty()) {
+                    byMissingOutpoint.remove(outpoint);
+                }
+            }
+        }
+    }
+
+    public synchronized int size() {return orphans.size();}
+}
@@ -0,0 +1,44 @@
+package ledger;
+
+import blockchain.StringUtil;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+// Remembers signatures that verified, so a transaction seen in the mempool, in a block and again after a reorg is
+// only checked with ECDSA once. Bounded, and striped so verifier threads rarely contend.
+public class SignatureCache {
+    private final ConcurrentLRUCache<String, Boolean> verified;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public SignatureCache(int capacity) {
+        this.verified = new ConcurrentLRUCache<>(capacity);
+    }
+
+    // The key covers the signer, everything signed and the signature itself, so a change to any of them is a miss.
+    // Each part is length-prefixed: otherwise bytes could move from one part into the next (e.g. the leading '0' of a DER
+    // signature onto the end of the signed data) and a forged transaction would hit the entry of a genuine one.
+    // The transactionId isn't part of it: processTransaction regenerates the id, and the same signature then shows up under a new one.
+    public static String key(String sender, String signedData, byte[] signature) {
+        byte[] senderBytes = sender.getBytes(StandardCharsets.UTF_8);
+        byte[] dataBytes = signedData.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(3 * Integer.BYTES + senderBytes.length + dataBytes.length + signature.length);
+        buffer.putInt(senderBytes.length).put(senderBytes)
+                .putInt(dataBytes.length).put(dataBytes)
+                .putInt(signature.length).put(signature)
+                .flip();
+        return StringUtil.bytesToHex(StringUtil.sha256(buffer));
+    }
+
+    public boolean contains(String key) {
+        boolean found = verified.get(key) != null;
+        (found ? hits : misses).increment();
+        return found;
+    }
+
+    public void add(String key) {verified.put(key, Boolean.TRUE);}
+    public long getHits() {return hits.sum();}
+    public long getMisses() {return misses.sum();}
+    public int size() {return verified.size();}
+}
@@ -2,27 +2,41 @@ package ledger;
 
 import blockchain.Blockchain;
 import blockchain.Constants;
+import blockchain.Sha256Hash;
 import blockchain.StringUtil;
+import com.google.gson.Gson;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class Transaction {
     public String transactionId; // unique identifier for the transaction, hash of the transaction's contents
     public String sender; // sender address as a string (previously PublicKey)
     public String recipient; // recipient address as a string (previously PublicKey)
     public float value; // amount of coins to send
+    public float fee; // paid to the miner: whatever the inputs hold beyond value + fee is returned as change
     public byte[] signature; // prevents others from spending funds in the sender's wallet
     public List<TransactionInput> inputs = new ArrayList<>(); // previous transaction outputs being used as inputs
     public List<TransactionOutput> outputs = new ArrayList<>(); // outputs created by this transaction
     private static int sequence = 0; // to ensure transaction uniqueness
+    private transient int size = -1; // Cached serialized size in bytes
+    private transient String verifiedData; // Signed data and signature that last verified, so a pre-checked transaction isn't verified twice
+    private transient byte[] verifiedSignature;
     public static final float minimumTransaction = Constants.MINIMUM_TRANSACTION; // Minimum transaction value
 
     public Transaction(String from, String to, float value, List<TransactionInput> inputs) {
+        this(from, to, value, 0, inputs);
+    }
+
+    public Transaction(String from, String to, float value, float fee, List<TransactionInput> inputs) {
         this.sender = from;
         this.recipient = to;
         this.value = value;
+        this.fee = fee;
         this.inputs = inputs;
         transactionId= calculateHash();
     }
@@ -35,8 +49,12 @@ public class Transaction {
 
     // Generates a signature using the sender's private key
     public void generateSignature(PrivateKey privateKey) {
-        String data = sender + recipient + value;
-        signature = StringUtil.applyECDSASig(privateKey, data); // generate signature
+        signature = StringUtil.applyECDSASig(privateKey, getSignedData()); // generate signature
+    }
+
+    // The fields covered by the signature; the fee is included so a relay can't redirect change to the miner
+    public String getSignedData() {
+        return sender + recipient + value + fee;
     }
 
     // Process the transaction, updating UTXOs and checking for validity, including double-spending prevention
@@ -70,24 +88,24 @@ public class Transaction {
                 return false;
             }
             // Ensure UTXO is mature enough to be spent
-            if (input.UTXO.confirmations < Blockchain.MINIMUM_CONFIRMATIONS) {
+            if (input.UTXO.getConfirmations() < Blockchain.MINIMUM_CONFIRMATIONS) {
                 System.out.println("#UTXO is not mature enough to be spent. Required confirmations: " + Blockchain.MINIMUM_CONFIRMATIONS);
                 return false;
             }
             inputSum += input.UTXO.value;
         }
         // Step 3: Check for double-spending in the unconfirmed transaction pool
-        for (Transaction pendingTx : Blockchain.unconfirmedTransactions) {
-            for (TransactionInput pendingInput : pendingTx.inputs) {
-                if (inputs.stream().anyMatch(i -> i.transactionOutputId.equals(pendingInput.transactionOutputId))) {
-                    System.out.println("#Input already spent in another unconfirmed transaction.");
-                    return false;
-                }
-            }
+        if (Blockchain.unconfirmedTransactions.hasConflict(this)) {
+            System.out.println("#Input already spent in another unconfirmed transaction.");
+            return false;
+        }
+        // Step 4: Check if inputs are sufficient to cover the transaction value and fee
+        if (fee < 0) {
+            System.out.println("#Transaction fee cannot be negative: " + fee);
+            return false;
         }
-        // Step 4: Check if inputs are sufficient to cover the transaction value
-        if (inputSum < value) {
-            System.out.println("#Not enough input value to cover the transaction. Required: " + value + ", Available: " + inputSum);
+        if (inputSum < value + fee) {
+            System.out.println("#Not enough input value to cover the transaction. Required: " + (value + fee) + ", Available: " + inputSum);
             return false;
         }
         // Ensure the transaction meets the minimum transaction value
@@ -97,10 +115,11 @@ public class Transaction {
         }
         // Step 5: Generate outputs for recipient and sender (change)
         transactionId = calculateHash();
+        outputs.clear(); // Outputs are derived from inputs, value and fee, so inputs minus outputs is exactly the fee
         outputs.add(new TransactionOutput(recipient, value, transactionId));  // Add recipient's output
-        // Return change to sender if input sum is greater than the value being sent
-        if (inputSum > value) {
-            outputs.add(new TransactionOutput(sender, inputSum - value, transactionId));  // Change output
+        // Return change to sender if input sum is greater than the value being sent plus the fee
+        if (inputSum > value + fee) {
+            outputs.add(new TransactionOutput(sender, inputSum - value - fee, transactionId));  // Change output
         }
         return true;
     }
@@ -112,11 +131,27 @@ public class Transaction {
             System.out.println("Skipping signature verification for Coinbase transaction: " + this.transactionId);
             return true;
         }
-        String data = sender + recipient + value;
+        if (sender == null || signature == null) {
+            System.out.println("Signature verification failed: transaction has no sender or is not signed.");
+            return false;
+        }
+        String data = getSignedData();
+        if (data.equals(verifiedData) && Arrays.equals(signature, verifiedSignature)) {
+            return true; // Verified before (e.g. by a parallel pre-check) and nothing signed has changed since
+        }
+        String cacheKey = SignatureCache.key(sender, data, signature);
+        if (Blockchain.signatureCache.contains(cacheKey)) {
+            verifiedData = data;
+            verifiedSignature = signature.clone();
+            return true; // Same signature already verified on another copy of this transaction
+        }
         try {
             PublicKey senderPublicKey = StringUtil.getKeyFromString(sender);
             boolean verified = StringUtil.verifyECDSASig(senderPublicKey, data, signature);
             if (verified) {
+                verifiedData = data;
+                verifiedSignature = signature.clone();
+                Blockchain.signatureCache.add(cacheKey);
                 System.out.println("Signature successfully verified!");
             } else {
                 System.out.println("Signature verification failed.");
@@ -129,6 +164,42 @@ public class Transaction {
         }
     }
 
+    // Structural checks that need neither the chain nor the pool. Coinbase transactions are only valid inside blocks.
+    public boolean hasValidFormat() {
+        if (!Sha256Hash.isHex(transactionId) || sender == null || recipient == null || inputs == null || "COINBASE".equals(sender)) {
+            return false;
+        }
+        if (!Float.isFinite(value) || value < 0 || !Float.isFinite(fee) || fee < 0) {
+            return false;
+        }
+        if (value != 0 && (signature == null || inputs.isEmpty())) {
+            return false;
+        }
+        if (value == 0 && fee != 0) {
+            return false; // Zero-value transactions spend nothing, so there is nothing to pay a fee from
+        }
+        Set<String> spent = new HashSet<>();
+        for (TransactionInput input : inputs) {
+            if (input == null || input.transactionOutputId == null || !spent.add(input.transactionOutputId)) {
+                return false; // Spending the same output twice would count its value twice
+            }
+        }
+        return true;
+    }
+
+    // Inputs that can't be spent yet because their output is unknown or not mature; a transaction failing only on these
+    // may become valid once more blocks arrive
+    public List<String> getUnspendableInputs() {
+        List<String> unspendable = new ArrayList<>();
+        for (TransactionInput input : inputs) {
+            TransactionOutput utxo = Blockchain.UTXOs.get(input.transactionOutputId);
+            if (utxo == null || utxo.getConfirmations() < Blockchain.MINIMUM_CONFIRMATIONS) {
+                unspendable.add(input.transactionOutputId);
+            }
+        }
+        return unspendable;
+    }
+
     public boolean isStillValid() {
         // Check that the transaction's inputs have not been spent in the current UTXO set
         for (TransactionInput input : this.inputs) {
@@ -140,6 +211,19 @@ public class Transaction {
         return true;  // The transaction is still valid
     }
 
+    // Fee per serialized byte, the order in which miners pick transactions
+    public double getFeeRate() {
+        return (double) fee / getSize();
+    }
+
+    // Serialized (JSON) size in bytes, used to fill blocks up to MAX_BLOCK_SIZE
+    public int getSize() {
+        if (size < 0) {
+            size = new Gson().toJson(this).length();
+        }
+        return size;
+    }
+
     public List<TransactionInput> getInputs() {return inputs;}
     public List<TransactionOutput> getOutputs() {return outputs;}
     public String getTransactionId() {return transactionId;}
@@ -150,6 +234,7 @@ public class Transaction {
                 ", sender='" + sender + '\'' +
                 ", recipient='" + recipient + '\'' +
                 ", value=" + value +
+                ", fee=" + fee +
                 ", inputs=" + inputs +
                 ", outputs=" + outputs +
                 '}';
@@ -1,5 +1,6 @@
 package ledger;
 
+import blockchain.Blockchain;
 import blockchain.StringUtil;
 
 public class TransactionOutput {
@@ -7,7 +8,7 @@ public class TransactionOutput {
     public String recipient; // recipient address as a string (previously PublicKey)
     public float value; // amount of coins
     public String parentTransactionId; // id of the transaction this output was created in
-    public int confirmations = 0;  // Number of blocks since this UTXO was created
+    public transient int height = -1; // Height of the block that created this output, -1 while it is not in a block
 
     public TransactionOutput(String recipient, float value, String parentTransactionId) {
         this.recipient = recipient;
@@ -16,6 +17,21 @@ public class TransactionOutput {
         this.id = StringUtil.applySha256(recipient + value + parentTransactionId);
     }
 
+    // An output read back from disk, exactly as it was stored rather than re-derived
+    public TransactionOutput(String id, String recipient, float value, String parentTransactionId, int height) {
+        this.id = id;
+        this.recipient = recipient;
+        this.value = value;
+        this.parentTransactionId = parentTransactionId;
+        this.height = height;
+    }
+
+    // Blocks on top of (and including) the one that created this output; derived from the tip so connecting a block
+    // never has to touch older outputs
+    public int getConfirmations() {
+        return Blockchain.UTXOs.getConfirmations(this);
+    }
+
     // Check if the coin belongs to the provided public key
     public boolean isMine(String publicKey) {
         return publicKey.equals(this.recipient);
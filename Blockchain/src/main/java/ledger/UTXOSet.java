@@ -0,0 +1,369 @@
+package ledger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Unspent outputs by id, with a secondary index by recipient so a wallet only has to look at its own coins.
+// Outputs are packed into parallel primitive arrays instead of being kept as objects: an open-addressing table keyed by
+// the 32-byte id (four longs), the parent transaction id likewise, the exact bits of the float amount, the creation height and a
+// reference into a table holding each recipient address once. That is under 100 bytes per output, against several
+// hundred for a TransactionOutput with its hex and Base64 strings plus a hash map node. get() and friends rebuild a
+// TransactionOutput on the way out, so callers see the same API as before.
+// Reads share a read lock; writes are serialized so the table and the address index never disagree.
+public class UTXOSet {
+    private static final int KEY_LONGS = 4; // A SHA-256 id as four longs
+    private static final int INITIAL_CAPACITY = 1024; // Slots, always a power of two
+    private static final float MAX_LOAD = 0.7f; // Of live plus deleted slots, both of which lengthen probe sequences
+    private static final byte EMPTY = 0, FULL = 1, DELETED = 2;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private byte[] states;
+    private long[] keys; // Output ids, KEY_LONGS per slot
+    private long[] parents; // Parent transaction ids, KEY_LONGS per slot
+    private int[] amountBits; // Float.floatToIntBits of each value, so amounts round-trip exactly
+    private int[] heights;
+    private int[] addressRefs;
+    private int[] nextForAddress; // Slots of the same recipient form a doubly linked list, -1 terminated
+    private int[] previousForAddress;
+    private int size = 0;
+    private int used = 0; // FULL and DELETED slots
+
+    // Every distinct recipient is stored once; ids of addresses without outputs are reused
+    private final Map<String, Integer> addressIds = new HashMap<>();
+    private final List<String> addresses = new ArrayList<>();
+    private int[] addressHeads = new int[16]; // First slot paid to each address
+    private int[] addressCounts = new int[16]; // Outputs paid to each address
+    private final Deque<Integer> freeAddressIds = new ArrayDeque<>();
+
+    // An id or parent id that isn't a lowercase SHA-256 hex string (only possible in a malformed block) can't be packed;
+    // such outputs are kept as plain objects
+    private final Map<String, TransactionOutput> unpacked = new HashMap<>();
+    private volatile int tipHeight = 0; // Height of the chain tip the set reflects, starting at the genesis block
+
+    public UTXOSet() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public TransactionOutput get(String id) {
+        long[] key = new long[KEY_LONGS];
+        lock.readLock().lock();
+        try {
+            int slot = parseHash(id, key, 0) ? find(key) : -1;
+            return slot < 0 ? unpacked.get(id) : materialize(slot, id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean containsKey(String id) {
+        long[] key = new long[KEY_LONGS];
+        lock.readLock().lock();
+        try {
+            return (parseHash(id, key, 0) && find(key) >= 0) || unpacked.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(String id, TransactionOutput output) {
+        long[] key = new long[KEY_LONGS];
+        long[] parent = new long[KEY_LONGS];
+        lock.writeLock().lock();
+        try {
+            boolean packable = parseHash(id, key, 0) && parseHash(output.parentTransactionId, parent, 0);
+            if (!packable) {
+                if (parseHash(id, key, 0)) {
+                    removePacked(key); // The packed entry it replaces, if any
+                }
+                unpacked.put(id, output);
+                return;
+            }
+            unpacked.remove(id);
+            int slot = find(key);
+            if (slot >= 0) {
+                releaseAddress(slot);
+            } else {
+                slot = insertionSlot(key);
+                if (states[slot] == EMPTY) {
+                    used++;
+                }
+                states[slot] = FULL;
+                System.arraycopy(key, 0, keys, slot * KEY_LONGS, KEY_LONGS);
+                size++;
+            }
+            System.arraycopy(parent, 0, parents, slot * KEY_LONGS, KEY_LONGS);
+            amountBits[slot] = Float.floatToIntBits(output.value);
+            heights[slot] = output.height;
+            linkAddress(slot, acquireAddress(output.recipient));
+            if (used > states.length * MAX_LOAD) {
+                // Grow if live entries fill the table, otherwise rebuilding at the same size just clears the deleted slots
+                rehash(size > states.length * MAX_LOAD / 2 ? states.length * 2 : states.length);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public TransactionOutput remove(String id) {
+        long[] key = new long[KEY_LONGS];
+        lock.writeLock().lock();
+        try {
+            if (!parseHash(id, key, 0)) {
+                return unpacked.remove(id);
+            }
+            int slot = find(key);
+            if (slot < 0) {
+                return unpacked.remove(id);
+            }
+            TransactionOutput removed = materialize(slot, id);
+            removePacked(key);
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getConfirmations(TransactionOutput output) {
+        return output.height < 0 ? 0 : Math.max(0, tipHeight - output.height + 1);
+    }
+
+    // Snapshot of the outputs paid to one address
+    public List<TransactionOutput> getOutputsFor(String recipient) {
+        List<TransactionOutput> outputs = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Integer address = addressIds.get(recipient);
+            if (address != null) {
+                for (int slot = addressHeads[address]; slot >= 0; slot = nextForAddress[slot]) {
+                    outputs.add(materialize(slot, null));
+                }
+            }
+            for (TransactionOutput output : unpacked.values()) {
+                if (output.recipient.equals(recipient)) {
+                    outputs.add(output);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return outputs;
+    }
+
+    // Snapshot of every output; each one is rebuilt, so this is for occasional full scans such as the UTXO snapshot
+    public List<TransactionOutput> values() {
+        lock.readLock().lock();
+        try {
+            List<TransactionOutput> outputs = new ArrayList<>(size + unpacked.size());
+            for (int slot = 0; slot < states.length; slot++) {
+                if (states[slot] == FULL) {
+                    outputs.add(materialize(slot, null));
+                }
+            }
+            outputs.addAll(unpacked.values());
+            return outputs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size + unpacked.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Heap held by the packed table and the address table, for the metrics endpoint
+    public long getMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            long table = (long) states.length * (1 + 2L * KEY_LONGS * Long.BYTES + 5L * Integer.BYTES);
+            long addressBytes = 0;
+            for (String address : addresses) {
+                addressBytes += address == null ? 0 : 40 + address.length(); // Compact Latin-1 string plus map entry
+            }
+            return table + addressBytes + 2L * addressHeads.length * Integer.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTipHeight() {return tipHeight;}
+    public void setTipHeight(int tipHeight) {this.tipHeight = tipHeight;}
+
+    private void allocate(int capacity) {
+        states = new byte[capacity];
+        keys = new long[capacity * KEY_LONGS];
+        parents = new long[capacity * KEY_LONGS];
+        amountBits = new int[capacity];
+        heights = new int[capacity];
+        addressRefs = new int[capacity];
+        nextForAddress = new int[capacity];
+        previousForAddress = new int[capacity];
+    }
+
+    // Slot holding the key, or -1; linear probing from the key's first long, which is already uniformly distributed
+    private int find(long[] key) {
+        int mask = states.length - 1;
+        for (int slot = (int) (key[0] ^ (key[0] >>> 32)) & mask; states[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (states[slot] == FULL && keyEquals(slot, key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    // First reusable slot on the key's probe sequence; only called when the key is known to be absent
+    private int insertionSlot(long[] key) {
+        int mask = states.length - 1;
+        int slot = (int) (key[0] ^ (key[0] >>> 32)) & mask;
+        while (states[slot] == FULL) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean keyEquals(int slot, long[] key) {
+        int base = slot * KEY_LONGS;
+        return keys[base] == key[0] && keys[base + 1] == key[1] && keys[base + 2] == key[2] && keys[base + 3] == key[3];
+    }
+
+    private void removePacked(long[] key) {
+        int slot = find(key);
+        if (slot >= 0) {
+            releaseAddress(slot);
+            states[slot] = DELETED; // A tombstone keeps later keys on the same probe sequence reachable
+            size--;
+        }
+    }
+
+    private void rehash(int capacity) {
+        byte[] oldStates = states;
+        long[] oldKeys = keys, oldParents = parents;
+        int[] oldAmountBits = amountBits, oldHeights = heights, oldAddressRefs = addressRefs;
+        allocate(capacity);
+        Arrays.fill(addressHeads, -1);
+        used = 0;
+        long[] key = new long[KEY_LONGS];
+        for (int old = 0; old < oldStates.length; old++) {
+            if (oldStates[old] != FULL) {
+                continue;
+            }
+            System.arraycopy(oldKeys, old * KEY_LONGS, key, 0, KEY_LONGS);
+            int slot = insertionSlot(key);
+            states[slot] = FULL;
+            used++;
+            System.arraycopy(key, 0, keys, slot * KEY_LONGS, KEY_LONGS);
+            System.arraycopy(oldParents, old * KEY_LONGS, parents, slot * KEY_LONGS, KEY_LONGS);
+            amountBits[slot] = oldAmountBits[old];
+            heights[slot] = oldHeights[old];
+            linkAddress(slot, oldAddressRefs[old]);
+        }
+    }
+
+    private int acquireAddress(String recipient) {
+        Integer address = addressIds.get(recipient);
+        if (address == null) {
+            if (freeAddressIds.isEmpty()) {
+                address = addresses.size();
+                addresses.add(recipient);
+                if (address == addressHeads.length) {
+                    addressHeads = Arrays.copyOf(addressHeads, address * 2);
+                    addressCounts = Arrays.copyOf(addressCounts, address * 2);
+                }
+            } else {
+                address = freeAddressIds.pop();
+                addresses.set(address, recipient);
+            }
+            addressIds.put(recipient, address);
+            addressHeads[address] = -1;
+            addressCounts[address] = 0;
+        }
+        addressCounts[address]++;
+        return address;
+    }
+
+    private void linkAddress(int slot, int address) {
+        addressRefs[slot] = address;
+        previousForAddress[slot] = -1;
+        nextForAddress[slot] = addressHeads[address];
+        if (addressHeads[address] >= 0) {
+            previousForAddress[addressHeads[address]] = slot;
+        }
+        addressHeads[address] = slot;
+    }
+
+    // Unlinks the slot from its address and drops the address once nothing is paid to it any more
+    private void releaseAddress(int slot) {
+        int address = addressRefs[slot];
+        int previous = previousForAddress[slot];
+        int next = nextForAddress[slot];
+        if (previous >= 0) {
+            nextForAddress[previous] = next;
+        } else {
+            addressHeads[address] = next;
+        }
+        if (next >= 0) {
+            previousForAddress[next] = previous;
+        }
+        if (--addressCounts[address] == 0) {
+            addressIds.remove(addresses.get(address));
+            addresses.set(address, null);
+            freeAddressIds.push(address);
+        }
+    }
+
+    private TransactionOutput materialize(int slot, String id) {
+        return new TransactionOutput(
+                id != null ? id : formatHash(keys, slot * KEY_LONGS),
+                addresses.get(addressRefs[slot]),
+                Float.intBitsToFloat(amountBits[slot]),
+                formatHash(parents, slot * KEY_LONGS),
+                heights[slot]);
+    }
+
+    // Packs a 64-character lowercase hex string into four longs; false for anything that wouldn't format back identically
+    private static boolean parseHash(String hex, long[] into, int offset) {
+        if (hex == null || hex.length() != KEY_LONGS * 16) {
+            return false;
+        }
+        for (int word = 0; word < KEY_LONGS; word++) {
+            long value = 0;
+            for (int i = word * 16; i < word * 16 + 16; i++) {
+                char c = hex.charAt(i);
+                int digit;
+                if (c >= '0' && c <= '9') {
+                    digit = c - '0';
+                } else if (c >= 'a' && c <= 'f') {
+                    digit = c - 'a' + 10;
+                } else {
+                    return false;
+                }
+                value = (value << 4) | digit;
+            }
+            into[offset + word] = value;
+        }
+        return true;
+    }
+
+    private static String formatHash(long[] from, int offset) {
+        char[] hex = new char[KEY_LONGS * 16];
+        for (int word = 0; word < KEY_LONGS; word++) {
+            long value = from[offset + word];
+            for (int i = 15; i >= 0; i--) {
+                hex[word * 16 + i] = HEX_DIGITS[(int) (value & 0xf)];
+                value >>>= 4;
+            }
+        }
+        return new String(hex);
+    }
+}
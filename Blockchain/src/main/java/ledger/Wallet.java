@@ -40,19 +40,21 @@ public class Wallet {
 
     public float calculateBalance(boolean onlyConfirmed) {
         float total = 0;
-        for (TransactionOutput utxo : Blockchain.UTXOs.values()) {
-            if (utxo.isMine(StringUtil.getStringFromKey(publicKey))) {
-                if (onlyConfirmed && utxo.confirmations >= Blockchain.MINIMUM_CONFIRMATIONS) {
-                    total += utxo.value;
-                } else if (!onlyConfirmed && utxo.confirmations < Blockchain.MINIMUM_CONFIRMATIONS) {
-                    total += utxo.value;
-                }
+        for (TransactionOutput utxo : Blockchain.UTXOs.getOutputsFor(StringUtil.getStringFromKey(publicKey))) {
+            if (onlyConfirmed && utxo.getConfirmations() >= Blockchain.MINIMUM_CONFIRMATIONS) {
+                total += utxo.value;
+            } else if (!onlyConfirmed && utxo.getConfirmations() < Blockchain.MINIMUM_CONFIRMATIONS) {
+                total += utxo.value;
             }
         }
         return total;
     }
 
     public Transaction sendFunds(String recipient, float value) {
+        return sendFunds(recipient, value, 0);
+    }
+
+    public Transaction sendFunds(String recipient, float value, float fee) {
         if (value == 0) {
             System.out.println("Creating a zero-value transaction.");
             Transaction zeroTransaction = new Transaction(StringUtil.getStringFromKey(publicKey), recipient, 0, new ArrayList<>());
@@ -60,31 +62,28 @@ public class Wallet {
             return zeroTransaction;
         }
 
-        if (getBalance() < value) {
+        if (getBalance() < value + fee) {
             System.out.println("Not enough funds.");
             return null;
         }
 
+        String sender = StringUtil.getStringFromKey(publicKey);
         ArrayList<TransactionInput> inputs = new ArrayList<>();
         float total = 0;
-        for (TransactionOutput utxo : Blockchain.UTXOs.values()) {
-            if (utxo.isMine(StringUtil.getStringFromKey(publicKey)) && utxo.confirmations >= Blockchain.MINIMUM_CONFIRMATIONS) {
+        for (TransactionOutput utxo : Blockchain.UTXOs.getOutputsFor(sender)) {
+            if (utxo.getConfirmations() >= Blockchain.MINIMUM_CONFIRMATIONS) {
                 total += utxo.value;
                 inputs.add(new TransactionInput(utxo.id));
-                if (total >= value) break;  // Stop gathering inputs once we have enough
+                if (total >= value + fee) break;  // Stop gathering inputs once we have enough
             }
         }
-        if (total < value) {
+        if (total < value + fee) {
             System.out.println("Not enough confirmed UTXOs.");
             return null;
         }
-        Transaction newTransaction = new Transaction(StringUtil.getStringFromKey(publicKey), recipient, value, inputs);
+        Transaction newTransaction = new Transaction(sender, recipient, value, fee, inputs);
         newTransaction.generateSignature(privateKey);
-        float change = total - value;
-        if (change > 0) {
-            System.out.println("Creating change output for sender: " + change);
-            newTransaction.outputs.add(new TransactionOutput(StringUtil.getStringFromKey(publicKey), change, newTransaction.transactionId));
-        }
+        System.out.println("Change returned to sender: " + (total - value - fee)); // The change output is created by processTransaction
         return newTransaction;
     }
 
@@ -9,5 +9,7 @@ public enum MessageType {
     CONNECTION_ESTABLISHED,
     TIP_REQUEST, TIP_RESPONSE,
     BLOCK_REQUEST, BLOCK_RESPONSE,
-    PING, PONG
+    PING, PONG,
+    MERKLE_PROOF_REQUEST, MERKLE_PROOF_RESPONSE,
+    WORK_REQUEST, WORK_TEMPLATE, WORK_SUBMIT, WORK_RESULT
 }
\ No newline at end of file
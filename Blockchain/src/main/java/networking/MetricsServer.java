@@ -0,0 +1,68 @@
+package networking;
+
+import blockchain.Blockchain;
+import blockchain.Constants;
+import blockchain.MiningMetrics;
+import com.sun.net.httpserver.HttpExchange;
+import ledger.Mempool;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+// Plain-text mining, mempool and signature cache metrics endpoint in the Prometheus exposition format, e.g. curl http://127.0.0.1:9100/metrics
+public class MetricsServer {
+    private final MiningMetrics miningMetrics;
+    private final Mempool mempool;
+
+    public MetricsServer(MiningMetrics miningMetrics, Mempool mempool) {
+        this.miningMetrics = miningMetrics;
+        this.mempool = mempool;
+    }
+
+    public void start() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(Constants.METRICS_ADDRESS, Constants.METRICS_PORT), 0);
+            server.createContext("/metrics", this::handleScrape);
+            server.start(); // Serves from its own dispatcher thread
+            System.out.println("Metrics available at http://" + Constants.METRICS_ADDRESS + ":" + Constants.METRICS_PORT + "/metrics");
+        } catch (IOException e) {
+            System.err.println("Metrics server failed to start on port " + Constants.METRICS_PORT + ": " + e.getMessage());
+        }
+    }
+
+    private String ledgerMetrics() {
+        return "# HELP mempool_transactions Unconfirmed transactions in the pool.\n# TYPE mempool_transactions gauge\n"
+                + "mempool_transactions " + mempool.size() + "\n"
+                + "# HELP mempool_usage_bytes Estimated heap retained by the pool.\n# TYPE mempool_usage_bytes gauge\n"
+                + "mempool_usage_bytes " + mempool.getUsageBytes() + "\n"
+                + "# HELP mempool_max_bytes Configured pool budget.\n# TYPE mempool_max_bytes gauge\n"
+                + "mempool_max_bytes " + mempool.getMaxBytes() + "\n"
+                + "# HELP mempool_min_fee_rate Current minimum fee per byte for admission.\n# TYPE mempool_min_fee_rate gauge\n"
+                + "mempool_min_fee_rate " + mempool.getMinFeeRate() + "\n"
+                + "# HELP mempool_evicted_total Transactions evicted because the pool was full.\n# TYPE mempool_evicted_total counter\n"
+                + "mempool_evicted_total " + mempool.getEvictedCount() + "\n"
+                + "# HELP mempool_orphans Transactions waiting for their inputs to become spendable.\n# TYPE mempool_orphans gauge\n"
+                + "mempool_orphans " + Blockchain.orphanTransactions.size() + "\n"
+                + "# HELP signature_cache_hits_total Signature checks answered from the cache.\n# TYPE signature_cache_hits_total counter\n"
+                + "signature_cache_hits_total " + Blockchain.signatureCache.getHits() + "\n"
+                + "# HELP signature_cache_misses_total Signature checks that needed ECDSA.\n# TYPE signature_cache_misses_total counter\n"
+                + "signature_cache_misses_total " + Blockchain.signatureCache.getMisses() + "\n"
+                + "# HELP signature_cache_entries Verified signatures currently cached.\n# TYPE signature_cache_entries gauge\n"
+                + "signature_cache_entries " + Blockchain.signatureCache.size() + "\n"
+                + "# HELP utxo_set_outputs Unspent outputs in the UTXO set.\n# TYPE utxo_set_outputs gauge\n"
+                + "utxo_set_outputs " + Blockchain.UTXOs.size() + "\n"
+                + "# HELP utxo_set_memory_bytes Heap used by the packed UTXO table.\n# TYPE utxo_set_memory_bytes gauge\n"
+                + "utxo_set_memory_bytes " + Blockchain.UTXOs.getMemoryBytes() + "\n";
+    }
+
+    private void handleScrape(HttpExchange exchange) throws IOException {
+        byte[] body = (miningMetrics.toPrometheus() + ledgerMetrics()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
@@ -321,6 +321,10 @@ public class NetworkManager {
         sendOutgoingMessage(peer.getSocket(), blockRequest);
     }
 
+    public void requestMerkleProof(String transactionId) { // Ask peers for an inclusion proof instead of downloading blocks
+        broadcastMessage(new Message(MessageType.MERKLE_PROOF_REQUEST, transactionId));
+    }
+
     public boolean isPeerConnected(String ipAddress) {
         Optional<PeerInfo> peerInfo = peers.values().stream()
                 .filter(p -> p.getIpAddress().equals(ipAddress))
@@ -106,6 +106,8 @@ public class Node implements Runnable {
             case BLOCK_RESPONSE -> handleBlockResponse(message);  // NEW: Handle block response
             case PING -> sendPong();  // Send a PONG back to the peer
             case PONG -> updatePeerAlive();  // Mark the peer as alive (successful response)
+            case MERKLE_PROOF_REQUEST -> handleMerkleProofRequest(message);
+            case MERKLE_PROOF_RESPONSE -> handleMerkleProofResponse(message);
             default -> log("Unknown message type received from " + peerIp + ": " + message.getType());
         }
     }
@@ -130,11 +132,38 @@ public class Node implements Runnable {
 
     private void handleBlockResponse(Message message) {
         List<Block> receivedBlocks = new Gson().fromJson(message.getData(), new TypeToken<List<Block>>(){}.getType());
+        // Verify the whole batch in parallel here, outside the chain lock; blocks from the first bad one on can't connect anyway
+        int firstInvalid = blockchain.getSignatureVerifier().findFirstInvalidBlock(receivedBlocks);
+        if (firstInvalid >= 0) {
+            log("Block " + receivedBlocks.get(firstInvalid).getHash() + " from " + peerIp + " has an invalid signature, dropping it and the rest of the batch.");
+            receivedBlocks = receivedBlocks.subList(0, firstInvalid);
+        }
         for (Block block : receivedBlocks) {
             forkResolution.addBlock(block);  // Add each block to ForkResolution's queue for processing.
         }
     }
 
+    private void handleMerkleProofRequest(Message message) {
+        MerkleProof proof = blockchain.getMerkleProof(message.getData()); // The data contains the transaction id
+        sendMessage(new Message(MessageType.MERKLE_PROOF_RESPONSE, gson.toJson(proof)));
+        log("Sent Merkle proof for transaction " + message.getData() + (proof == null ? " (not found)" : ""));
+    }
+
+    private void handleMerkleProofResponse(Message message) {
+        MerkleProof proof = gson.fromJson(message.getData(), MerkleProof.class);
+        if (proof == null) {
+            log("Peer " + peerIp + " has no Merkle proof for the requested transaction.");
+            return;
+        }
+        Block block = blockchain.getBlockByHash(proof.getBlockHash());
+        if (block == null) {
+            log("Rejected Merkle proof for transaction " + proof.getTransactionId() + ": block " + proof.getBlockHash() + " is not in our chain.");
+            return;
+        }
+        boolean valid = proof.verify(block.getMerkleRoot()); // The root the peer put in the proof proves nothing by itself
+        log("Merkle proof for transaction " + proof.getTransactionId() + " in block " + proof.getBlockHash() + (valid ? " verified." : " is INVALID."));
+    }
+
     private void handleTipRequest() {
         int currentTip = blockchain.getLastBlock().getIndex(); // Get the current tip (the latest block index) from the blockchain
         Message tipResponse = new Message(MessageType.TIP_RESPONSE, String.valueOf(currentTip));
@@ -147,6 +176,9 @@ public class Node implements Runnable {
         try {
             int tipIndex = Integer.parseInt(message.getData());
             blockchain.setPeerChainTipIndex(tipIndex);
+            if (tipIndex <= blockchain.getCurrentChainTip()) {
+                blockchain.markCaughtUp(); // Already caught up, no sync will follow
+            }
             networkManager.syncWithPeers(tipIndex);
         } catch (NumberFormatException e) {
             log("Invalid blockchain tip received from peer " + peerIp + ": " + message.getData());
@@ -180,7 +212,7 @@ public class Node implements Runnable {
                 log("Transaction " + transaction.transactionId + " already processed. Ignoring...");
                 return;
             }
-            blockchain.handleNewTransaction(transaction, peerIp, networkManager, forkResolution);
+            blockchain.handleNewTransaction(transaction, peerIp);
         } catch (Exception e) {
             log("Error deserializing transaction: " + e.getMessage());
         }
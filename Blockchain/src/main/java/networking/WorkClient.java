@@ -0,0 +1,117 @@
+package networking;
+
+import blockchain.Constants;
+import blockchain.MiningEngine;
+import blockchain.MiningMetrics;
+import blockchain.StringUtil;
+import com.google.gson.Gson;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+
+// Standalone miner process: fetches work from a node's WorkServer, hashes it with the local MiningEngine and submits solutions.
+// Usage: java -cp Blockchain.jar networking.WorkClient [host] [port] [threads]
+public class WorkClient {
+    private final MiningMetrics metrics = new MiningMetrics();
+    private final MiningEngine miningEngine;
+    private final Gson gson = new Gson();
+    private PrintWriter output;
+    private volatile boolean connected = true;
+    private volatile WorkJob currentJob; // Replaced whenever the node pushes new work, which aborts the running search
+
+    public WorkClient(int threads) {
+        this.miningEngine = new MiningEngine(threads, metrics);
+    }
+
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : Constants.WORK_SERVER_ADDRESS;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : Constants.WORK_SERVER_PORT;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Constants.MINING_THREADS;
+        new WorkClient(threads).run(host, port);
+    }
+
+    public void run(String host, int port) {
+        try (Socket socket = new Socket(host, port)) {
+            System.out.println("Connected to work server at " + host + ":" + port);
+            output = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            Thread reader = new Thread(() -> readMessages(input), "work-reader");
+            reader.setDaemon(true);
+            reader.start();
+
+            requestWork();
+            while (connected) {
+                WorkJob job = awaitJob();
+                if (job == null) {
+                    requestWork(); // No work arrived in time (e.g. the node was syncing), ask again
+                    continue;
+                }
+                long nonce = miningEngine.search(StringUtil.hexToBytes(job.getHeader()), job.getNonceStart(), job.getNonceEnd(),
+                        () -> currentJob != job);
+                System.out.printf("Job %s done, hashrate %.0f H/s%n", job.getJobId(), metrics.getHashrate());
+                if (nonce >= 0) {
+                    System.out.println("Found nonce " + nonce + " for job " + job.getJobId() + ", submitting.");
+                    send(new Message(MessageType.WORK_SUBMIT, gson.toJson(new WorkSubmission(job.getJobId(), nonce))));
+                }
+                synchronized (this) {
+                    if (currentJob != job) {
+                        continue; // The node already pushed newer work
+                    }
+                    currentJob = null;
+                }
+                requestWork();
+            }
+        } catch (IOException e) {
+            System.err.println("Work server connection failed: " + e.getMessage());
+        }
+    }
+
+    private void readMessages(BufferedReader input) {
+        try {
+            String line;
+            while ((line = input.readLine()) != null) {
+                Message message = gson.fromJson(line, Message.class);
+                switch (message.getType()) {
+                    case WORK_TEMPLATE -> {
+                        WorkJob job = gson.fromJson(message.getData(), WorkJob.class);
+                        synchronized (this) {
+                            currentJob = job;
+                            notifyAll();
+                        }
+                    }
+                    case WORK_RESULT -> System.out.println("Work server: " + message.getData());
+                    default -> System.out.println("Ignoring unexpected message: " + message.getType());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Lost connection to work server: " + e.getMessage());
+        }
+        synchronized (this) {
+            connected = false;
+            notifyAll(); // Wake the mining loop so it can notice the reader is gone
+        }
+    }
+
+    private synchronized WorkJob awaitJob() {
+        long deadline = System.currentTimeMillis() + Constants.TEMPLATE_REFRESH_MS;
+        while (connected && currentJob == null && System.currentTimeMillis() < deadline) {
+            try {
+                wait(Constants.TEMPLATE_REFRESH_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return currentJob;
+    }
+
+    private void requestWork() {
+        send(new Message(MessageType.WORK_REQUEST, ""));
+    }
+
+    private synchronized void send(Message message) {
+        output.println(gson.toJson(message));
+    }
+}
@@ -0,0 +1,25 @@
+package networking;
+
+import blockchain.Block;
+
+public class WorkJob {
+    private final String jobId;
+    private final String header; // Hex encoded block header with the nonce left at zero
+    private final long nonceStart; // First nonce of this work unit (inclusive)
+    private final long nonceEnd; // End of this work unit (exclusive)
+    private final transient Block template; // Stays on the node, workers only ever see the header
+
+    public WorkJob(String jobId, String header, long nonceStart, long nonceEnd, Block template) {
+        this.jobId = jobId;
+        this.header = header;
+        this.nonceStart = nonceStart;
+        this.nonceEnd = nonceEnd;
+        this.template = template;
+    }
+
+    public String getJobId() {return jobId;}
+    public String getHeader() {return header;}
+    public long getNonceStart() {return nonceStart;}
+    public long getNonceEnd() {return nonceEnd;}
+    public Block getTemplate() {return template;}
+}
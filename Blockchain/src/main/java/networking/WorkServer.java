@@ -0,0 +1,192 @@
+package networking;
+
+import blockchain.*;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import ledger.LRUCache;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Hands out disjoint slices of the current block template to external miner processes (see WorkClient).
+// Validation, the mempool and networking stay in the node; workers only ever see an 84-byte header and a nonce range.
+public class WorkServer {
+    private static final long RANGES_PER_TIMESTAMP = MiningEngine.NONCE_SPACE / Constants.WORK_RANGE_SIZE;
+    private final Blockchain blockchain;
+    private final ForkResolution forkResolution;
+    private final ExecutorService serverPool = Executors.newCachedThreadPool();
+    private final Map<Socket, PrintWriter> workers = new ConcurrentHashMap<>(); // Connected workers and their output streams
+    private final LRUCache<String, WorkJob> jobs = new LRUCache<>(Constants.MAX_WORK_JOBS); // Issued work, guarded by this
+    private final Gson gson = new Gson();
+    private Block template; // Template all current jobs are cut from, null when no worker needs one
+    private long templateCreatedAt;
+    private long nextSlice; // Index of the next unissued (timestamp, nonce range) slice of the template
+    private long jobCounter = 0;
+
+    public WorkServer(Blockchain blockchain, ForkResolution forkResolution) {
+        this.blockchain = blockchain;
+        this.forkResolution = forkResolution;
+    }
+
+    public void start() {
+        serverPool.submit(this::acceptWorkers);
+        serverPool.submit(this::watchTemplate);
+    }
+
+    private void acceptWorkers() {
+        try (ServerSocket serverSocket = new ServerSocket(Constants.WORK_SERVER_PORT, 50, InetAddress.getByName(Constants.WORK_SERVER_ADDRESS))) {
+            System.out.println("Work server listening on " + Constants.WORK_SERVER_ADDRESS + ":" + Constants.WORK_SERVER_PORT);
+            while (!Thread.currentThread().isInterrupted()) {
+                Socket socket = serverSocket.accept();
+                serverPool.submit(() -> handleWorker(socket));
+            }
+        } catch (IOException e) {
+            System.err.println("Work server failed on port " + Constants.WORK_SERVER_PORT + ": " + e.getMessage());
+        }
+    }
+
+    private void handleWorker(Socket socket) {
+        String workerAddress = socket.getRemoteSocketAddress().toString();
+        System.out.println("Miner connected from " + workerAddress);
+        try (socket; BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+            PrintWriter output = new PrintWriter(socket.getOutputStream(), true);
+            workers.put(socket, output);
+            String line;
+            while ((line = input.readLine()) != null) {
+                Message message = gson.fromJson(line, Message.class);
+                if (message == null || message.getType() == null) { // A blank line, or an unknown type
+                    System.out.println("Ignoring malformed message from miner " + workerAddress);
+                    continue;
+                }
+                switch (message.getType()) {
+                    case WORK_REQUEST -> sendJob(output);
+                    case WORK_SUBMIT -> handleSubmission(output, gson.fromJson(message.getData(), WorkSubmission.class));
+                    default -> System.out.println("Ignoring " + message.getType() + " from miner " + workerAddress);
+                }
+            }
+        } catch (IOException | JsonSyntaxException e) {
+            System.err.println("Miner connection " + workerAddress + " failed: " + e.getMessage());
+        } finally {
+            workers.remove(socket);
+            System.out.println("Miner disconnected: " + workerAddress);
+        }
+    }
+
+    private void handleSubmission(PrintWriter output, WorkSubmission submission) {
+        if (submission == null) { // WORK_SUBMIT without data
+            send(output, new Message(MessageType.WORK_RESULT, "rejected: malformed submission"));
+            return;
+        }
+        Block solved;
+        synchronized (this) {
+            WorkJob job = jobs.get(submission.getJobId());
+            if (job == null || job.getTemplate() != template) {
+                send(output, new Message(MessageType.WORK_RESULT, "stale: job " + submission.getJobId() + " is no longer current"));
+                return;
+            }
+            long nonce = submission.getNonce();
+            if (nonce < job.getNonceStart() || nonce >= job.getNonceEnd()) {
+                send(output, new Message(MessageType.WORK_RESULT, "rejected: nonce outside the assigned range"));
+                return;
+            }
+            BlockHeader header = new BlockHeader(StringUtil.hexToBytes(job.getHeader()));
+            Sha256Hash hash = Sha256Hash.wrap(MiningEngine.hashWithNonce(header, (int) nonce));
+            if (!hash.meetsTarget(header.getBits())) {
+                send(output, new Message(MessageType.WORK_RESULT, "rejected: hash does not meet the target"));
+                return;
+            }
+            if (!template.getPreviousHash().equals(blockchain.getTipHash())) {
+                send(output, new Message(MessageType.WORK_RESULT, "stale: the chain tip has moved"));
+                return;
+            }
+            template.applySolution(header.getTimestamp(), (int) nonce, hash.toHex());
+            solved = template;
+            blockchain.getMiningMetrics().blockMined("external", solved, templateCreatedAt);
+            template = null; // The solved template now belongs to the chain, the next job starts a new one
+            jobs.clear();
+        }
+        System.out.println("Block mined by external miner! Hash: " + solved.getHash());
+        send(output, new Message(MessageType.WORK_RESULT, "accepted: " + solved.getHash()));
+        blockchain.submitMinedBlock(solved, forkResolution);
+        pushNewWork();
+    }
+
+    // Rebuilds the template when the tip moves or it gets old, and pushes fresh jobs so workers drop the stale ones
+    private void watchTemplate() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(Constants.TEMPLATE_REFRESH_MS / 20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            boolean refreshed = false;
+            synchronized (this) {
+                if (template != null && workers.isEmpty()) {
+                    discardTemplate(); // Nobody is mining it
+                } else if (template != null && (!template.getPreviousHash().equals(blockchain.getTipHash())
+                        || System.currentTimeMillis() - templateCreatedAt > Constants.TEMPLATE_REFRESH_MS)) {
+                    discardTemplate();
+                    refreshed = true;
+                }
+            }
+            if (refreshed) {
+                pushNewWork();
+            }
+        }
+    }
+
+    private void pushNewWork() {
+        workers.values().forEach(this::sendJob);
+    }
+
+    private void sendJob(PrintWriter output) {
+        WorkJob job = nextJob();
+        if (job == null) {
+            send(output, new Message(MessageType.WORK_RESULT, "retry: node is syncing"));
+        } else {
+            send(output, new Message(MessageType.WORK_TEMPLATE, gson.toJson(job)));
+        }
+    }
+
+    // Each job is a distinct (timestamp, nonce range) slice of the same template, so no two workers ever hash the same header
+    private synchronized WorkJob nextJob() {
+        if (template == null) {
+            if (blockchain.isSyncing()) {
+                return null;
+            }
+            template = blockchain.createBlockTemplate();
+            templateCreatedAt = System.currentTimeMillis();
+            blockchain.getMiningMetrics().templateCreated("external", templateCreatedAt);
+            nextSlice = 0;
+        }
+        long slice = nextSlice++;
+        long timestamp = template.getTimestamp() + slice / RANGES_PER_TIMESTAMP;
+        long nonceStart = (slice % RANGES_PER_TIMESTAMP) * Constants.WORK_RANGE_SIZE;
+        String header = StringUtil.bytesToHex(template.createHeader(timestamp).getBytes());
+        WorkJob job = new WorkJob(Long.toString(++jobCounter), header, nonceStart, nonceStart + Constants.WORK_RANGE_SIZE, template);
+        jobs.put(job.getJobId(), job);
+        return job;
+    }
+
+    private void discardTemplate() {
+        blockchain.releaseTemplate(template);
+        blockchain.getMiningMetrics().templateAbandoned("external");
+        template = null;
+        jobs.clear();
+    }
+
+    private void send(PrintWriter output, Message message) {
+        synchronized (output) { // Pushes from the watcher can race with replies on the worker's own thread
+            output.println(gson.toJson(message));
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package networking;
+
+public class WorkSubmission {
+    private final String jobId;
+    private final long nonce;
+
+    public WorkSubmission(String jobId, long nonce) {
+        this.jobId = jobId;
+        this.nonce = nonce;
+    }
+
+    public String getJobId() {return jobId;}
+    public long getNonce() {return nonce;}
+}
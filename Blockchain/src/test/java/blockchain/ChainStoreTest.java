@@ -0,0 +1,124 @@
+package blockchain;
+
+import ledger.CoinbaseTransaction;
+import ledger.Transaction;
+import ledger.TransactionOutput;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ChainStoreTest {
+    private final Block genesis = new Block(0, "0");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendedBlocksAreLoadedBack() {
+        List<Block> blocks = appendBlocks(3);
+        ChainStore.Loaded loaded = new ChainStore(directory.toString()).open(genesis);
+        assertEquals(hashes(blocks), hashes(loaded.blocks));
+        assertEquals(3, loaded.utxos.size()); // One coinbase output per block
+    }
+
+    @Test
+    void outputIdsThatAreNotHashesAreStored() {
+        ChainStore store = new ChainStore(directory.toString());
+        store.open(genesis);
+        Block block = nextBlock(genesis);
+        BlockUndo undo = new BlockUndo();
+        undo.addSpent(new TransactionOutput("not-a-hash", "alice", 1.5f, null, 0));
+        undo.addSpent(new TransactionOutput("AB".repeat(32), "bob", 2.5f, "parent", 0)); // Upper case doesn't round-trip as raw bytes
+        store.append(block, undo);
+        store.append(nextBlock(block), new BlockUndo()); // Persistence is still on after the odd ids
+
+        ChainStore.Loaded loaded = new ChainStore(directory.toString()).open(genesis);
+        assertEquals(2, loaded.blocks.size());
+        List<TransactionOutput> spent = loaded.undoRecords.get(0).getSpentOutputs();
+        assertEquals("not-a-hash", spent.get(0).id);
+        assertNull(spent.get(0).parentTransactionId);
+        assertEquals(1.5f, spent.get(0).value);
+        assertEquals("AB".repeat(32), spent.get(1).id);
+    }
+
+    @Test
+    void tornTailIsCutOff() throws IOException {
+        List<Block> blocks = appendBlocks(3);
+        Path blockFile = directory.resolve("blocks.dat");
+        long length = Files.size(blockFile);
+        try (RandomAccessFile file = new RandomAccessFile(blockFile.toFile(), "rw")) {
+            file.setLength(length - 5); // A crash in the middle of writing the last record
+        }
+
+        ChainStore store = new ChainStore(directory.toString());
+        ChainStore.Loaded loaded = store.open(genesis);
+        assertEquals(hashes(blocks.subList(0, 2)), hashes(loaded.blocks));
+        Block replacement = nextBlock(blocks.get(1));
+        store.append(replacement, new BlockUndo()); // Written where the torn record started
+
+        loaded = new ChainStore(directory.toString()).open(genesis);
+        assertEquals(List.of(blocks.get(0).getHash(), blocks.get(1).getHash(), replacement.getHash()), hashes(loaded.blocks));
+    }
+
+    @Test
+    void recordWithBadChecksumEndsTheChain() throws IOException {
+        List<Block> blocks = appendBlocks(3);
+        Path blockFile = directory.resolve("blocks.dat");
+        long length = Files.size(blockFile);
+        try (RandomAccessFile file = new RandomAccessFile(blockFile.toFile(), "rw")) {
+            file.seek(length - 20); // Inside the last record's payload
+            int value = file.read();
+            file.seek(length - 20);
+            file.write(value ^ 0xff);
+        }
+
+        ChainStore.Loaded loaded = new ChainStore(directory.toString()).open(genesis);
+        assertEquals(hashes(blocks.subList(0, 2)), hashes(loaded.blocks));
+        assertEquals(2, loaded.utxos.size());
+    }
+
+    @Test
+    void corruptLengthFieldEndsTheChain() throws IOException {
+        List<Block> blocks = appendBlocks(2);
+        Path blockFile = directory.resolve("blocks.dat");
+        try (RandomAccessFile file = new RandomAccessFile(blockFile.toFile(), "rw")) {
+            file.seek(Files.size(blockFile));
+            file.writeInt(Integer.MAX_VALUE); // A length claiming far more than the file holds
+            file.write(new byte[16]);
+        }
+
+        ChainStore.Loaded loaded = new ChainStore(directory.toString()).open(genesis);
+        assertEquals(hashes(blocks), hashes(loaded.blocks));
+    }
+
+    private List<Block> appendBlocks(int count) {
+        ChainStore store = new ChainStore(directory.toString());
+        store.open(genesis);
+        List<Block> blocks = new ArrayList<>();
+        Block previous = genesis;
+        for (int i = 0; i < count; i++) {
+            Block block = nextBlock(previous);
+            store.append(block, new BlockUndo());
+            blocks.add(block);
+            previous = block;
+        }
+        return blocks;
+    }
+
+    private static Block nextBlock(Block previous) {
+        Transaction coinbase = new CoinbaseTransaction("miner", Constants.MINING_REWARD);
+        coinbase.outputs.add(new TransactionOutput(coinbase.recipient, coinbase.value, coinbase.transactionId));
+        return new Block(previous.getIndex() + 1, previous.getHash(), List.of(coinbase), Constants.INITIAL_DIFFICULTY_BITS);
+    }
+
+    private static List<String> hashes(List<Block> blocks) {
+        return blocks.stream().map(Block::getHash).toList();
+    }
+}
@@ -0,0 +1,100 @@
+package blockchain;
+
+import org.junit.jupiter.api.Test;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DifficultyTargetTest {
+    private static final long EXPECTED = Constants.TARGET_BLOCK_TIME_MS * Constants.RETARGET_INTERVAL;
+
+    @Test
+    void compactBitsRoundTrip() {
+        int[] samples = {Constants.INITIAL_DIFFICULTY_BITS, Constants.MAX_TARGET_BITS, 0x1d00ffff, 0x1b0404cb, 0x03123456, 0x02008000};
+        for (int bits : samples) {
+            assertEquals(bits, DifficultyTarget.encodeCompact(DifficultyTarget.decodeCompact(bits)), Integer.toHexString(bits));
+        }
+    }
+
+    @Test
+    void encodingKeepsTheMantissaPositive() {
+        int bits = DifficultyTarget.encodeCompact(BigInteger.valueOf(0x80)); // 0x800000 would read back as a negative mantissa
+        assertEquals(0x02008000, bits);
+        assertEquals(BigInteger.valueOf(0x80), DifficultyTarget.decodeCompact(bits));
+    }
+
+    @Test
+    void targetBytesAreTheBigEndianTarget() {
+        byte[] expected = new byte[Sha256Hash.LENGTH];
+        expected[2] = 0x01; // 0x010000 shifted up by 27 bytes
+        assertArrayEquals(expected, DifficultyTarget.toTargetBytes(Constants.INITIAL_DIFFICULTY_BITS));
+    }
+
+    @Test
+    void hashEqualToTheTargetMeetsIt() {
+        byte[] target = DifficultyTarget.toTargetBytes(Constants.INITIAL_DIFFICULTY_BITS);
+        assertTrue(DifficultyTarget.meetsTarget(target.clone(), target));
+        byte[] above = target.clone();
+        above[Sha256Hash.LENGTH - 1] = 1;
+        assertFalse(DifficultyTarget.meetsTarget(above, target));
+        byte[] below = new byte[Sha256Hash.LENGTH];
+        below[3] = (byte) 0xff;
+        assertTrue(DifficultyTarget.meetsTarget(below, target));
+    }
+
+    @Test
+    void onScheduleKeepsTheTarget() {
+        assertEquals(Constants.INITIAL_DIFFICULTY_BITS, DifficultyTarget.retarget(Constants.INITIAL_DIFFICULTY_BITS, EXPECTED, EXPECTED));
+    }
+
+    @Test
+    void retargetScalesWithTheTimespan() {
+        BigInteger target = DifficultyTarget.decodeCompact(Constants.INITIAL_DIFFICULTY_BITS);
+        int slower = DifficultyTarget.retarget(Constants.INITIAL_DIFFICULTY_BITS, 2 * EXPECTED, EXPECTED);
+        assertEquals(target.shiftLeft(1), DifficultyTarget.decodeCompact(slower));
+        int faster = DifficultyTarget.retarget(Constants.INITIAL_DIFFICULTY_BITS, EXPECTED / 2, EXPECTED);
+        assertEquals(target.shiftRight(1), DifficultyTarget.decodeCompact(faster));
+    }
+
+    @Test
+    void retargetIsClampedToTheMaximumFactor() {
+        BigInteger target = DifficultyTarget.decodeCompact(Constants.INITIAL_DIFFICULTY_BITS);
+        BigInteger factor = BigInteger.valueOf(Constants.MAX_RETARGET_FACTOR);
+        int slowest = DifficultyTarget.retarget(Constants.INITIAL_DIFFICULTY_BITS, 100 * EXPECTED, EXPECTED);
+        assertEquals(target.multiply(factor), DifficultyTarget.decodeCompact(slowest));
+        int fastest = DifficultyTarget.retarget(Constants.INITIAL_DIFFICULTY_BITS, 0, EXPECTED);
+        assertEquals(target.divide(factor), DifficultyTarget.decodeCompact(fastest));
+        int negative = DifficultyTarget.retarget(Constants.INITIAL_DIFFICULTY_BITS, -EXPECTED, EXPECTED); // Timestamps going backwards
+        assertEquals(fastest, negative);
+    }
+
+    @Test
+    void retargetNeverGoesBelowMinimumDifficulty() {
+        assertEquals(Constants.MAX_TARGET_BITS, DifficultyTarget.retarget(Constants.MAX_TARGET_BITS, 4 * EXPECTED, EXPECTED));
+    }
+
+    @Test
+    void medianTimePastUsesTheLastBlocksOnly() {
+        Blockchain blockchain = new Blockchain();
+        assertEquals(0, blockchain.getMedianTimePast(1)); // Only the genesis block, timestamp 0
+        List<Long> timestamps = new ArrayList<>();
+        for (int height = 1; height <= 20; height++) {
+            long timestamp = 1_000_000L + (height % 2 == 0 ? height : -height) * 1000L; // Out of order, as miners' clocks are
+            timestamps.add(timestamp);
+            Block block = new Block(height, blockchain.getLastBlock().getHash(), new ArrayList<>(), Constants.INITIAL_DIFFICULTY_BITS);
+            block.applySolution(timestamp, 0, block.calculateHash());
+            blockchain.getChain().add(block);
+        }
+
+        // Height 21 looks at heights 10..20
+        List<Long> window = new ArrayList<>(timestamps.subList(9, 20));
+        window.sort(null);
+        assertEquals((long) window.get(Constants.MEDIAN_TIME_SPAN / 2), blockchain.getMedianTimePast(21));
+        // Height 4 only has genesis and heights 1..3: 0, 999000, 1002000, 997000
+        assertEquals(999_000L, blockchain.getMedianTimePast(4));
+    }
+}
@@ -0,0 +1,58 @@
+package blockchain;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class HashKernelTest {
+    private static final int EASY_BITS = 0x2003ffff; // Roughly one hash in 64 qualifies, so most windows hold a solution
+
+    @Test
+    void vectorKernelPassesItsSelfTest() {
+        assertTrue(newVectorKernel().selfTest());
+    }
+
+    @Test
+    void vectorAndScalarKernelsFindTheSameNonces() {
+        HashKernel vector = newVectorKernel();
+        HashKernel scalar = new ScalarHashKernel();
+        long[] starts = {0, 1, 7_654_321L, (1L << 31) - 100, (1L << 32) - 4000};
+        int[] counts = {1, 3, 64, 1000, 4093}; // Including counts that don't fill the last group of lanes
+        for (int i = 0; i < 10; i++) {
+            BlockHeader header = new BlockHeader(Constants.BLOCK_VERSION, StringUtil.applySha256("previous" + i),
+                    StringUtil.applySha256("merkle" + i), 1_700_000_000_000L + i, EASY_BITS, 0);
+            for (int bits : new int[]{EASY_BITS, Constants.INITIAL_DIFFICULTY_BITS}) {
+                byte[] target = DifficultyTarget.toTargetBytes(bits);
+                for (long from : starts) {
+                    for (int count : counts) {
+                        assertEquals(scalar.search(header, from, count, target), vector.search(header, from, count, target),
+                                "header " + i + ", bits " + Integer.toHexString(bits) + ", nonces " + from + " + " + count);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void everyNonceOfAnEasyTargetIsFound() {
+        HashKernel vector = newVectorKernel();
+        HashKernel scalar = new ScalarHashKernel();
+        BlockHeader header = new BlockHeader(Constants.BLOCK_VERSION, StringUtil.applySha256("previous"),
+                StringUtil.applySha256("merkle"), 1_700_000_000_000L, EASY_BITS, 0);
+        byte[] target = DifficultyTarget.toTargetBytes(EASY_BITS);
+        // Walk solution to solution, so a lane that misses a candidate shows up as a different next nonce
+        long scalarNonce = -1;
+        long vectorNonce = -1;
+        for (int found = 0; found < 200; found++) {
+            scalarNonce = scalar.search(header, scalarNonce + 1, 1 << 16, target);
+            vectorNonce = vector.search(header, vectorNonce + 1, 1 << 16, target);
+            assertEquals(scalarNonce, vectorNonce);
+        }
+    }
+
+    private static HashKernel newVectorKernel() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), "run with --add-modules jdk.incubator.vector");
+        return new VectorSha256Kernel();
+    }
+}
@@ -0,0 +1,44 @@
+package ledger;
+
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SignatureCacheTest {
+    private static final String SENDER = "sender";
+    private static final byte[] SIGNATURE = {0x30, 0x45, 0x02, 0x21, 0x00, 0x7f, 0x11}; // DER signatures start with 0x30, i.e. '0'
+
+    @Test
+    void sameSignatureHits() {
+        SignatureCache cache = new SignatureCache(16);
+        cache.add(SignatureCache.key(SENDER, "data", SIGNATURE));
+        assertTrue(cache.contains(SignatureCache.key(SENDER, "data", SIGNATURE.clone())));
+    }
+
+    @Test
+    void truncatedSignatureMisses() {
+        SignatureCache cache = new SignatureCache(16);
+        cache.add(SignatureCache.key(SENDER, "data", SIGNATURE));
+        assertFalse(cache.contains(SignatureCache.key(SENDER, "data", Arrays.copyOf(SIGNATURE, SIGNATURE.length - 1))));
+        assertFalse(cache.contains(SignatureCache.key(SENDER, "data", Arrays.copyOfRange(SIGNATURE, 1, SIGNATURE.length))));
+    }
+
+    // A fee of 1.0E-4 signed, then rewritten to 1.0E-40 by moving the signature's leading '0' onto the signed data
+    @Test
+    void signatureBytesShiftedIntoSignedDataMiss() {
+        SignatureCache cache = new SignatureCache(16);
+        String signedData = SENDER + "recipient" + 1.0f + 1.0E-4f;
+        cache.add(SignatureCache.key(SENDER, signedData, SIGNATURE));
+        String forgedData = SENDER + "recipient" + 1.0f + 1.0E-40f;
+        assertTrue(forgedData.equals(signedData + "0")); // Without length prefixes both would hash the same bytes
+        assertFalse(cache.contains(SignatureCache.key(SENDER, forgedData, Arrays.copyOfRange(SIGNATURE, 1, SIGNATURE.length))));
+    }
+
+    @Test
+    void bytesShiftedBetweenSenderAndSignedDataMiss() {
+        SignatureCache cache = new SignatureCache(16);
+        cache.add(SignatureCache.key(SENDER, "data", SIGNATURE));
+        assertFalse(cache.contains(SignatureCache.key(SENDER + "d", "ata", SIGNATURE)));
+    }
+}
@@ -0,0 +1,179 @@
+package ledger;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UTXOSetTest {
+    private static final String SAME_SLOT = "00000000deadbeef"; // Leading long shared by ids that must collide in the table
+    private final Random random = new Random(42);
+
+    @Test
+    void putThenGetReturnsTheSameOutput() {
+        UTXOSet set = new UTXOSet();
+        TransactionOutput output = new TransactionOutput(randomHash(), "alice", 0.1f, randomHash(), 7);
+        set.put(output.id, output);
+
+        TransactionOutput stored = set.get(output.id);
+        assertEquals(output.id, stored.id);
+        assertEquals("alice", stored.recipient);
+        assertEquals(0.1f, stored.value); // Exact float bits, not a rounded fixed-point amount
+        assertEquals(output.parentTransactionId, stored.parentTransactionId);
+        assertEquals(7, stored.height);
+        assertTrue(set.containsKey(output.id));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void putReplacesAnExistingOutput() {
+        UTXOSet set = new UTXOSet();
+        String id = randomHash();
+        set.put(id, new TransactionOutput(id, "alice", 1f, randomHash(), -1));
+        set.put(id, new TransactionOutput(id, "bob", 2f, randomHash(), 3));
+
+        assertEquals(1, set.size());
+        assertEquals("bob", set.get(id).recipient);
+        assertEquals(3, set.get(id).height);
+        assertTrue(set.getOutputsFor("alice").isEmpty());
+        assertEquals(1, set.getOutputsFor("bob").size());
+    }
+
+    @Test
+    void keysBehindATombstoneStayReachable() {
+        UTXOSet set = new UTXOSet();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ids.add(collidingHash());
+            set.put(ids.get(i), new TransactionOutput(ids.get(i), "alice", i, randomHash(), i));
+        }
+
+        assertEquals(1f, set.remove(ids.get(1)).value);
+        assertNull(set.get(ids.get(1)));
+        assertNull(set.remove(ids.get(1)));
+        assertEquals(2f, set.get(ids.get(2)).value); // Found by probing past the deleted slot
+        assertEquals(3f, set.get(ids.get(3)).value);
+
+        set.put(ids.get(1), new TransactionOutput(ids.get(1), "bob", 10f, randomHash(), 1)); // Reuses the tombstone
+        assertEquals(4, set.size());
+        assertEquals(10f, set.get(ids.get(1)).value);
+        set.remove(ids.get(0));
+        set.remove(ids.get(2));
+        assertEquals(10f, set.get(ids.get(1)).value);
+        assertEquals(3f, set.get(ids.get(3)).value);
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    void reinsertingAfterManyRemovalsDoesNotDuplicate() {
+        UTXOSet set = new UTXOSet();
+        String kept = collidingHash();
+        set.put(kept, new TransactionOutput(kept, "alice", 1f, randomHash(), 0));
+        for (int i = 0; i < 5000; i++) { // Tombstones spread over the table, enough to force clean-up rehashes at the same capacity
+            String id = i % 2 == 0 ? collidingHash() : randomHash();
+            set.put(id, new TransactionOutput(id, "bob", 2f, randomHash(), 0));
+            set.remove(id);
+        }
+        set.put(kept, new TransactionOutput(kept, "alice", 3f, randomHash(), 0));
+
+        assertEquals(1, set.size());
+        assertEquals(3f, set.get(kept).value);
+        assertEquals(1, set.values().size());
+        assertTrue(set.getOutputsFor("bob").isEmpty());
+    }
+
+    @Test
+    void growsPastTheInitialCapacity() {
+        UTXOSet set = new UTXOSet();
+        Map<String, Float> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            String id = randomHash();
+            set.put(id, new TransactionOutput(id, "address" + (i % 50), i, randomHash(), i));
+            expected.put(id, (float) i);
+        }
+        assertEquals(expected.size(), set.size());
+        expected.forEach((id, value) -> assertEquals((float) value, set.get(id).value));
+        assertEquals(expected.keySet(), ids(set.values()));
+    }
+
+    @Test
+    void addressIndexMatchesTheOutputs() {
+        UTXOSet set = new UTXOSet();
+        Map<String, TransactionOutput> reference = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        for (int step = 0; step < 20_000; step++) {
+            int operation = random.nextInt(3);
+            if (operation == 0 || ids.isEmpty()) {
+                String id = random.nextInt(10) == 0 ? collidingHash() : randomHash();
+                TransactionOutput output = new TransactionOutput(id, "address" + random.nextInt(20), step, randomHash(), step);
+                set.put(id, output);
+                reference.put(id, output);
+                ids.add(id);
+            } else if (operation == 1) {
+                String id = ids.remove(random.nextInt(ids.size()));
+                assertEquals(reference.remove(id).value, set.remove(id).value);
+            } else { // Same id, new recipient: moves the slot to another address list
+                String id = ids.get(random.nextInt(ids.size()));
+                TransactionOutput output = new TransactionOutput(id, "address" + random.nextInt(20), step, randomHash(), step);
+                set.put(id, output);
+                reference.put(id, output);
+            }
+        }
+
+        assertEquals(reference.size(), set.size());
+        for (int address = 0; address < 20; address++) {
+            String recipient = "address" + address;
+            Set<String> expected = new HashSet<>();
+            reference.values().stream().filter(output -> output.recipient.equals(recipient)).forEach(output -> expected.add(output.id));
+            List<TransactionOutput> outputs = set.getOutputsFor(recipient);
+            assertEquals(expected.size(), outputs.size(), recipient + " listed an output twice");
+            assertEquals(expected, ids(outputs));
+        }
+    }
+
+    @Test
+    void idsThatCannotBePackedAreKeptAside() {
+        UTXOSet set = new UTXOSet();
+        String packed = randomHash();
+        set.put(packed, new TransactionOutput(packed, "alice", 1f, randomHash(), 0));
+        set.put(packed, new TransactionOutput(packed, "alice", 2f, "not-a-hash", 0)); // Parent can't be packed either
+
+        assertEquals(1, set.size());
+        assertEquals(2f, set.get(packed).value);
+        assertEquals(1, set.getOutputsFor("alice").size());
+        set.put("odd-id", new TransactionOutput("odd-id", "alice", 3f, randomHash(), 0));
+        assertEquals(3f, set.get("odd-id").value);
+        assertEquals(2, set.getOutputsFor("alice").size());
+
+        assertEquals(2f, set.remove(packed).value);
+        assertEquals(3f, set.remove("odd-id").value);
+        assertFalse(set.containsKey(packed));
+        assertEquals(0, set.size());
+    }
+
+    private String randomHash() {
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            hex.append(String.format("%016x", random.nextLong()));
+        }
+        return hex.toString();
+    }
+
+    private String collidingHash() {
+        return SAME_SLOT + randomHash().substring(16);
+    }
+
+    private static Set<String> ids(List<TransactionOutput> outputs) {
+        Set<String> ids = new HashSet<>();
+        outputs.forEach(output -> ids.add(output.id));
+        return ids;
+    }
+}